@@ -136,6 +136,9 @@ public class PipeBlock extends QuarkBlock implements SimpleWaterloggedBlock, Ent
 	
 	@Override
 	public void neighborChanged(BlockState state, Level worldIn, BlockPos pos, Block blockIn, BlockPos fromPos, boolean isMoving) {
+		if(worldIn.getBlockEntity(pos) instanceof PipeBlockEntity pipe)
+			pipe.invalidateConnections();
+
 		BlockState targetState = getTargetState(worldIn, pos, state.getValue(WATERLOGGED));
 		if(!targetState.equals(state))
 			worldIn.setBlock(pos, targetState, 2 | 4);
@@ -1,7 +1,10 @@
 package vazkii.quark.addons.oddities.block.be;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
@@ -29,19 +32,27 @@ import net.minecraft.world.phys.AABB;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.items.CapabilityItemHandler;
-import net.minecraftforge.items.wrapper.SidedInvWrapper;
+import net.minecraftforge.items.ItemHandlerHelper;
 import vazkii.quark.addons.oddities.block.CrateBlock;
+import vazkii.quark.addons.oddities.inventory.CrateItemHandler;
 import vazkii.quark.addons.oddities.inventory.CrateMenu;
 import vazkii.quark.addons.oddities.module.CrateModule;
 import vazkii.quark.base.handler.SortingHandler;
+import vazkii.quark.base.util.ItemKey;
 
 public class CrateBlockEntity extends BaseContainerBlockEntity implements WorldlyContainer {
 
+	// How many stacks automation can see at once, a double chest's worth
+	private static final int EXPOSED_STACKS = 54;
+
 	private int totalItems = 0;
 	private int numPlayersUsing;
 	private List<ItemStack> stacks = new ArrayList<>();
 
-	private LazyOptional<SidedInvWrapper> wrapper = LazyOptional.of(() -> new SidedInvWrapper(this, Direction.UP));
+	// For every item, a stack in the crate that still has room for more of it. Only a hint, checked before use
+	private final Map<ItemKey, ItemStack> openStacks = new HashMap<>();
+
+	private LazyOptional<CrateItemHandler> wrapper = LazyOptional.of(() -> new CrateItemHandler(this));
 
 	private int[] visibleSlots = new int[0];
 	boolean needsUpdate = false;
@@ -86,31 +97,120 @@ public class CrateBlockEntity extends BaseContainerBlockEntity implements Worldl
 		}
 	}
 
+	/**
+	 * Inserts as much of the stack as there's room for, topping up a stack of the same item before starting new ones.
+	 * Returns whatever didn't fit. Only the item handler inserts through here, so it doesn't need to scan every slot.
+	 */
+	public ItemStack insert(ItemStack stack, boolean simulate) {
+		int room = CrateModule.maxItems - totalItems;
+		if(stack.isEmpty() || room <= 0)
+			return stack;
+
+		int inserted = Math.min(stack.getCount(), room);
+		if(!simulate) {
+			addMerged(ItemHandlerHelper.copyStackWithSize(stack, inserted));
+			setChanged();
+		}
+
+		return inserted == stack.getCount() ? ItemStack.EMPTY : ItemHandlerHelper.copyStackWithSize(stack, stack.getCount() - inserted);
+	}
+
+	private void addMerged(ItemStack stack) {
+		ItemKey key = new ItemKey(stack);
+		ItemStack open = openStacks.get(key);
+
+		if(open != null && !open.isEmpty() && open.getCount() < open.getMaxStackSize() && ItemStack.isSameItemSameTags(open, stack)) {
+			int moved = Math.min(stack.getCount(), open.getMaxStackSize() - open.getCount());
+			open.grow(moved);
+			stack.shrink(moved);
+			totalItems += moved;
+		}
+
+		while(!stack.isEmpty()) {
+			open = stack.split(stack.getMaxStackSize());
+			stacks.add(open);
+			totalItems += open.getCount();
+		}
+
+		if(open != null && open.getCount() < open.getMaxStackSize())
+			openStacks.put(key, open);
+		else openStacks.remove(key);
+	}
+
+	private void forgetOpenStack(ItemStack stack) {
+		if(!stack.isEmpty())
+			openStacks.remove(new ItemKey(stack), stack);
+	}
+
+	/**
+	 * Recounts every item in the crate. Only needed when something edited a stack in place, like a player clicking
+	 * on a slot in the crate's menu, everything else keeps the total up to date on its own.
+	 */
+	public void recountItems() {
+		totalItems = 0;
+		for(ItemStack stack : stacks)
+			totalItems += stack.getCount();
+
+		setChanged();
+	}
+
 	@Override
 	protected void saveAdditional(CompoundTag compound) {
 		super.saveAdditional(compound);
 		
 		compound.putInt("totalItems", totalItems);
 
+		// Identical stacks are saved as one entry with the total count. Older versions only read "stacks", so once a
+		// crate is saved this way it can't be opened by them anymore
+		Map<ItemKey, ItemStack> merged = new LinkedHashMap<>();
+		for(ItemStack stack : stacks)
+			if(!stack.isEmpty()) {
+				ItemKey key = new ItemKey(stack);
+				ItemStack entry = merged.get(key);
+				if(entry == null)
+					merged.put(key, stack.copy());
+				else entry.grow(stack.getCount());
+			}
+
 		ListTag list = new ListTag();
-		for(ItemStack stack : stacks) {
-			CompoundTag stackCmp = new CompoundTag();
-			stack.save(stackCmp);
-			list.add(stackCmp);
+		for(ItemStack entry : merged.values()) {
+			CompoundTag entryCmp = new CompoundTag();
+			ItemStack single = entry.copy();
+			single.setCount(1);
+			single.save(entryCmp);
+			entryCmp.putInt("crateCount", entry.getCount());
+			list.add(entryCmp);
 		}
-		compound.put("stacks", list);
+		compound.put("entries", list);
 	}
 
 	@Override
 	public void load(CompoundTag nbt) {
 		super.load(nbt);
 
-		totalItems = nbt.getInt("totalItems");
+		stacks = new ArrayList<>();
+		openStacks.clear();
+		totalItems = 0;
 
-		ListTag list = nbt.getList("stacks", 10);
-		stacks = new ArrayList<>(list.size());
-		for(int i = 0; i < list.size(); i++)
-			stacks.add(ItemStack.of(list.getCompound(i)));
+		if(nbt.contains("entries")) {
+			ListTag list = nbt.getList("entries", 10);
+			for(int i = 0; i < list.size(); i++) {
+				CompoundTag entryCmp = list.getCompound(i);
+				ItemStack stack = ItemStack.of(entryCmp);
+				if(!stack.isEmpty()) {
+					stack.setCount(entryCmp.getInt("crateCount"));
+					addMerged(stack);
+				}
+			}
+		} else {
+			// Crates saved before entries were merged
+			ListTag list = nbt.getList("stacks", 10);
+			for(int i = 0; i < list.size(); i++) {
+				ItemStack stack = ItemStack.of(list.getCompound(i));
+				stacks.add(stack);
+				totalItems += stack.getCount();
+			}
+		}
 	}
 
 	@Override
@@ -123,6 +223,7 @@ public class CrateBlockEntity extends BaseContainerBlockEntity implements Worldl
 		if(slot < stacks.size()) {
 			ItemStack stack = getItem(slot);
 			totalItems -= stack.getCount();
+			forgetOpenStack(stack);
 			needsUpdate = true;
 
 			return stack;
@@ -141,6 +242,7 @@ public class CrateBlockEntity extends BaseContainerBlockEntity implements Worldl
 		} else {
 			int sizeDiff = stack.getCount() - stackAt.getCount();
 			totalItems += sizeDiff;
+			forgetOpenStack(stackAt);
 			stacks.set(slot, stack);
 		}
 	}
@@ -149,7 +251,7 @@ public class CrateBlockEntity extends BaseContainerBlockEntity implements Worldl
 	public ItemStack removeItem(int slot, int count) {
 		ItemStack stack = getItem(slot);
 		ItemStack retstack = stack.split(count);
-		totalItems -= count;
+		totalItems -= retstack.getCount();
 
 		if(stack.isEmpty())
 			needsUpdate = true;
@@ -157,15 +259,6 @@ public class CrateBlockEntity extends BaseContainerBlockEntity implements Worldl
 		return retstack;
 	}
 
-	@Override
-	public void setChanged() {
-		super.setChanged();
-
-		totalItems = 0;
-		for(ItemStack stack : stacks)
-			totalItems += stack.getCount();
-	}
-
 	@Override
 	public int getContainerSize() {
 		return Math.min(CrateModule.maxItems, stacks.size() + 1);
@@ -174,6 +267,7 @@ public class CrateBlockEntity extends BaseContainerBlockEntity implements Worldl
 	@Override
 	public void clearContent() {
 		stacks.clear();
+		openStacks.clear();
 		totalItems = 0;
 	}
 
@@ -194,10 +288,14 @@ public class CrateBlockEntity extends BaseContainerBlockEntity implements Worldl
 
 	@Override
 	public int[] getSlotsForFace(Direction arg0) {
-		if(visibleSlots.length != (stacks.size() + 1)) {
-			visibleSlots = new int[stacks.size() + 1];
-			for(int i = 0; i < visibleSlots.length; i++)
+		// Only the stacks at the front are shown, plus the slot new items go in. Emptied stacks are cleared out
+		// every tick, so the ones further back move into view as the front gets taken out
+		int shown = Math.min(stacks.size(), EXPOSED_STACKS);
+		if(visibleSlots.length != (shown + 1) || visibleSlots[shown] != stacks.size()) {
+			visibleSlots = new int[shown + 1];
+			for(int i = 0; i < shown; i++)
 				visibleSlots[i] = i;
+			visibleSlots[shown] = stacks.size();
 		}
 
 		return visibleSlots;
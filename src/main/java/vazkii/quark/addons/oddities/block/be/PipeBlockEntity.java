@@ -1,20 +1,20 @@
 package vazkii.quark.addons.oddities.block.be;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Random;
 
 import javax.annotation.Nonnull;
 
 import com.google.common.base.Predicate;
 import com.mojang.math.Vector3f;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.core.Direction.Axis;
@@ -22,6 +22,7 @@ import net.minecraft.core.particles.DustParticleOptions;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.network.protocol.game.ClientGamePacketListener;
 import net.minecraft.network.protocol.game.ClientboundBlockEntityDataPacket;
@@ -32,6 +33,7 @@ import net.minecraft.world.WorldlyContainerHolder;
 import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.entity.BlockEntity;
@@ -46,6 +48,8 @@ import vazkii.quark.addons.oddities.module.PipesModule;
 import vazkii.quark.base.client.handler.NetworkProfilingHandler;
 import vazkii.quark.base.handler.MiscUtil;
 import vazkii.quark.base.handler.QuarkSounds;
+import vazkii.quark.base.network.QuarkNetwork;
+import vazkii.quark.base.network.message.oddities.PipeSyncMessage;
 
 public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 
@@ -54,6 +58,7 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 	}
 	
 	private static final String TAG_PIPE_ITEMS = "pipeItems";
+	private static final int CONNECTION_REFRESH_TICKS = 20;
 	
 	private boolean iterating = false;
 	public final List<PipeItem> pipeItems = new LinkedList<>();
@@ -61,6 +66,28 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 	
 	private boolean skipSync = false;
 
+	// Server side: items that entered or left this pipe since the last delta was sent
+	private int nextItemId = 0;
+	private final List<PipeItem> addedItems = new ArrayList<>();
+	private final IntList removedItems = new IntArrayList();
+
+	// Connection types to each side, refreshed on neighbour changes and every so often for the ones we don't hear about
+	private final ConnectionType[] connections = new ConnectionType[6];
+	private boolean connectionsValid = false;
+	private long connectionsCheckedAt;
+
+	// Where items get picked up from for every OPENING side, null for the rest
+	private final AABB[] intakeBoxes = new AABB[6];
+	private boolean hasOpenings = false;
+
+	// canFit answers for each side, only valid during the tick they were computed in
+	private final ItemStack[] fitStacks = new ItemStack[6];
+	private final boolean[] fitResults = new boolean[6];
+	private final long[] fitTimes = new long[6];
+
+	// Scratch space for routing so it doesn't need to allocate
+	private final Direction[] routingSides = new Direction[4];
+
 	public static boolean isTheGoodDay(Level world) {
 		Calendar calendar = Calendar.getInstance();
 		return calendar.get(Calendar.MONTH) + 1 == 4 && calendar.get(Calendar.DAY_OF_MONTH) == 1;
@@ -77,46 +104,9 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 
 		BlockState blockAt = level.getBlockState(worldPosition);
 		if(!level.isClientSide && enabled && blockAt.getBlock() instanceof PipeBlock) {
-			for(Direction side : Direction.values()) {
-				if(getConnectionTo(level, worldPosition, side) == ConnectionType.OPENING) {
-					double minX = worldPosition.getX() + 0.25 + 0.5 * Math.min(0, side.getStepX());
-					double minY = worldPosition.getY() + 0.25 + 0.5 * Math.min(0, side.getStepY());
-					double minZ = worldPosition.getZ() + 0.25 + 0.5 * Math.min(0, side.getStepZ());
-					double maxX = worldPosition.getX() + 0.75 + 0.5 * Math.max(0, side.getStepX());
-					double maxY = worldPosition.getY() + 0.75 + 0.5 * Math.max(0, side.getStepY());
-					double maxZ = worldPosition.getZ() + 0.75 + 0.5 * Math.max(0, side.getStepZ());
-
-					Direction opposite = side.getOpposite();
-
-					boolean pickedItemsUp = false;
-					Predicate<ItemEntity> predicate = entity -> {
-						if(entity == null || !entity.isAlive())
-							return false;
-						
-						Vec3 motion = entity.getDeltaMovement();
-						Direction dir = Direction.getNearest(motion.x, motion.y, motion.z);
-						
-						return dir == opposite;
-					};
-					
-					for (ItemEntity item : level.getEntitiesOfClass(ItemEntity.class, new AABB(minX, minY, minZ, maxX, maxY, maxZ), predicate)) {
-						passIn(item.getItem().copy(), side);
-						
-						if (PipesModule.doPipesWhoosh) { 
-							if (isTheGoodDay(level))
-								level.playSound(null, item.getX(), item.getY(), item.getZ(), QuarkSounds.BLOCK_PIPE_PICKUP_LENNY, SoundSource.BLOCKS, 1f, 1f);
-							else
-								level.playSound(null, item.getX(), item.getY(), item.getZ(), QuarkSounds.BLOCK_PIPE_PICKUP, SoundSource.BLOCKS, 1f, 1f);
-						}
-
-						pickedItemsUp = true;
-						item.discard();
-					}
-
-					if(pickedItemsUp)
-						sync();
-				}
-			}
+			updateConnections();
+			if(hasOpenings && isIntakeTick())
+				takeInItems();
 		}
 
 		int currentOut = getComparatorOutput();
@@ -136,6 +126,11 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 				if(item.tick(this)) {
 					itemItr.remove();
 
+					// The server decides where the item ends up, the next pipe over will be told about it
+					if(level.isClientSide)
+						continue;
+
+					itemRemoved(item);
 					if (item.valid)
 						passOut(item);
 					else {
@@ -146,16 +141,66 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 			iterating = false;
 
 			pipeItems.addAll(queuedItems);
-			if(!queuedItems.isEmpty())
-				sync();
-			
 			queuedItems.clear();
 		}
 
+		if(!level.isClientSide)
+			sendDelta();
+
 		if(getComparatorOutput() != currentOut)
 			level.updateNeighbourForOutputSignal(getBlockPos(), getBlockState().getBlock());
 	}
 
+	private boolean isIntakeTick() {
+		int interval = PipesModule.intakeInterval;
+
+		// Spread pipes out over the interval so they don't all sweep on the same tick
+		return interval <= 1 || Math.floorMod(level.getGameTime() + worldPosition.hashCode(), interval) == 0;
+	}
+
+	private void takeInItems() {
+		for(Direction side : Direction.values()) {
+			AABB intakeBox = intakeBoxes[side.ordinal()];
+			if(intakeBox == null)
+				continue;
+
+			Direction opposite = side.getOpposite();
+
+			Predicate<ItemEntity> predicate = entity -> {
+				if(entity == null || !entity.isAlive())
+					return false;
+				
+				Vec3 motion = entity.getDeltaMovement();
+				Direction dir = Direction.getNearest(motion.x, motion.y, motion.z);
+				
+				return dir == opposite;
+			};
+			
+			for (ItemEntity item : level.getEntitiesOfClass(ItemEntity.class, intakeBox, predicate)) {
+				passIn(item.getItem().copy(), side);
+				
+				if (PipesModule.doPipesWhoosh) { 
+					if (isTheGoodDay(level))
+						level.playSound(null, item.getX(), item.getY(), item.getZ(), QuarkSounds.BLOCK_PIPE_PICKUP_LENNY, SoundSource.BLOCKS, 1f, 1f);
+					else
+						level.playSound(null, item.getX(), item.getY(), item.getZ(), QuarkSounds.BLOCK_PIPE_PICKUP, SoundSource.BLOCKS, 1f, 1f);
+				}
+
+				item.discard();
+			}
+		}
+	}
+
+	private AABB getIntakeBox(Direction side) {
+		double minX = worldPosition.getX() + 0.25 + 0.5 * Math.min(0, side.getStepX());
+		double minY = worldPosition.getY() + 0.25 + 0.5 * Math.min(0, side.getStepY());
+		double minZ = worldPosition.getZ() + 0.25 + 0.5 * Math.min(0, side.getStepZ());
+		double maxX = worldPosition.getX() + 0.75 + 0.5 * Math.max(0, side.getStepX());
+		double maxY = worldPosition.getY() + 0.75 + 0.5 * Math.max(0, side.getStepY());
+		double maxZ = worldPosition.getZ() + 0.75 + 0.5 * Math.max(0, side.getStepZ());
+		return new AABB(minX, minY, minZ, maxX, maxY, maxZ);
+	}
+
 	public int getComparatorOutput() {
 		return Math.min(15, pipeItems.size());
 	}
@@ -167,6 +212,11 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 	public boolean passIn(ItemStack stack, Direction face, Direction backlog, long seed, int time) {
 		PipeItem item = new PipeItem(stack, face, seed);
 		item.backloggedFace = backlog;
+		if(level != null && !level.isClientSide && !skipSync) {
+			item.netId = nextItemId++;
+			addedItems.add(item);
+		}
+
 		if(!iterating) {
 			int currentOut = getComparatorOutput();
 			pipeItems.add(item);
@@ -265,6 +315,39 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 		}
 	}
 	
+	private void itemRemoved(PipeItem item) {
+		// Never told the client about it in the first place
+		if(!addedItems.remove(item))
+			removedItems.add(item.netId);
+	}
+
+	private void sendDelta() {
+		if(addedItems.isEmpty() && removedItems.isEmpty())
+			return;
+
+		PipeDelta delta = new PipeDelta(new ArrayList<>(addedItems), removedItems.toIntArray());
+		addedItems.clear();
+		removedItems.clear();
+
+		if(level instanceof ServerLevel serverLevel) {
+			PipeSyncMessage message = new PipeSyncMessage(worldPosition, delta);
+			QuarkNetwork.sendToPlayers(message, serverLevel.getChunkSource().chunkMap.getPlayers(new ChunkPos(worldPosition), false));
+		}
+	}
+
+	public void applyDelta(PipeDelta delta) {
+		if(delta.removed.length > 0) {
+			IntList removed = IntArrayList.wrap(delta.removed);
+			pipeItems.removeIf(item -> removed.contains(item.netId));
+		}
+
+		for(PipeItem item : delta.added) {
+			// Can overlap with a full resync when the chunk was just sent
+			pipeItems.removeIf(other -> other.netId == item.netId);
+			pipeItems.add(item);
+		}
+	}
+
 	@Override
 	public void onDataPacket(Connection net, ClientboundBlockEntityDataPacket packet) {
 		super.onDataPacket(net, packet);
@@ -272,8 +355,10 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 	}
 
 	public void dropAllItems() {
-		for(PipeItem item : pipeItems)
+		for(PipeItem item : pipeItems) {
+			itemRemoved(item);
 			dropItem(item.stack);
+		}
 		pipeItems.clear();
 	}
 
@@ -281,6 +366,15 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 	public Packet<ClientGamePacketListener> getUpdatePacket() {
 		return ClientboundBlockEntityDataPacket.create(this);
 	}
+
+	// Full contents are only sent along with the chunk, item changes after that go through PipeSyncMessage
+	@Nonnull
+	@Override
+	public CompoundTag getUpdateTag() {
+		CompoundTag cmp = super.getUpdateTag();
+		writeSharedNBT(cmp);
+		return cmp;
+	}
 	
 	@Override
 	public void readSharedNBT(CompoundTag cmp) {
@@ -294,6 +388,15 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 			PipeItem item = PipeItem.readFromNBT((CompoundTag) listCmp);
 			pipeItems.add(item);
 		});
+
+		nextItemId = 0;
+		for(PipeItem item : pipeItems)
+			nextItemId = Math.max(nextItemId, item.netId + 1);
+
+		// Items saved before network ids were a thing
+		for(PipeItem item : pipeItems)
+			if(item.netId == -1)
+				item.netId = nextItemId++;
 	}
 
 	@Override
@@ -309,6 +412,50 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 		cmp.put(TAG_PIPE_ITEMS, pipeItemList);
 	}
 
+	public ConnectionType getConnection(Direction side) {
+		updateConnections();
+		return connections[side.ordinal()];
+	}
+
+	private void updateConnections() {
+		long time = level.getGameTime();
+		if(connectionsValid && time - connectionsCheckedAt < CONNECTION_REFRESH_TICKS && time >= connectionsCheckedAt)
+			return;
+
+		hasOpenings = false;
+		for(Direction d : Direction.values()) {
+			ConnectionType type = getConnectionTo(level, worldPosition, d);
+			connections[d.ordinal()] = type;
+
+			if(type == ConnectionType.OPENING) {
+				intakeBoxes[d.ordinal()] = getIntakeBox(d);
+				hasOpenings = true;
+			} else intakeBoxes[d.ordinal()] = null;
+		}
+
+		connectionsValid = true;
+		connectionsCheckedAt = time;
+	}
+
+	public void invalidateConnections() {
+		connectionsValid = false;
+	}
+
+	protected boolean canFit(ItemStack stack, Direction side) {
+		int i = side.ordinal();
+		long time = level.getGameTime();
+
+		ItemStack cached = fitStacks[i];
+		if(cached != null && fitTimes[i] == time && cached.getCount() == stack.getCount() && ItemStack.isSameItemSameTags(cached, stack))
+			return fitResults[i];
+
+		boolean fits = canFit(stack, worldPosition.relative(side), side.getOpposite());
+		fitStacks[i] = stack;
+		fitResults[i] = fits;
+		fitTimes[i] = time;
+		return fits;
+	}
+
 	protected boolean canFit(ItemStack stack, BlockPos pos, Direction face) {
 		if(level.getBlockState(pos).getBlock() instanceof WorldlyContainerHolder)
 			return MiscUtil.canPutIntoInv(stack, level, pos, null, face,false);
@@ -338,9 +485,6 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 		if(!itemstack.isEmpty()) {
 			Direction side = Direction.values()[i];
 			passIn(itemstack, side);
-			
-			if(!level.isClientSide && !skipSync)
-				sync();
 		}
 	}
 
@@ -403,8 +547,12 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 		private static final String TAG_BACKLOGGED = "backloggedFace";
 		private static final String TAG_RNG_SEED = "rngSeed";
 		private static final String TAG_TIME_IN_WORLD = "timeInWorld";
+		private static final String TAG_NET_ID = "netId";
 
-		private static final List<Direction> HORIZONTAL_SIDES_LIST = Arrays.asList(MiscUtil.HORIZONTALS);
+		// java.util.Random's LCG, see shuffleSides
+		private static final long RNG_MULTIPLIER = 0x5DEECE66DL;
+		private static final long RNG_ADDEND = 0xBL;
+		private static final long RNG_MASK = (1L << 48) - 1;
 
 		public final ItemStack stack;
 		public int ticksInPipe;
@@ -414,6 +562,7 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 		public long rngSeed;
 		public int timeInWorld = 0;
 		public boolean valid = true;
+		public int netId = -1;
 
 		public PipeItem(ItemStack stack, Direction face, long rngSeed) {
 			this.stack = stack;
@@ -440,30 +589,30 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 		}
 
 		protected Direction getTargetFace(PipeBlockEntity pipe) {
-			BlockPos pipePos = pipe.getBlockPos();
-			if(incomingFace != Direction.DOWN && backloggedFace != Direction.DOWN && pipe.canFit(stack, pipePos.relative(Direction.DOWN), Direction.UP))
+			if(incomingFace != Direction.DOWN && backloggedFace != Direction.DOWN && pipe.canFit(stack, Direction.DOWN))
 				return Direction.DOWN;
 
-			Direction incomingOpposite = incomingFace; // init as same so it doesn't break in the remove later
+			Direction incomingOpposite = incomingFace; // init as same so it doesn't break in the filter later
 			if(incomingFace.getAxis() != Axis.Y) {
 				incomingOpposite = incomingFace.getOpposite();
-				if(incomingOpposite != backloggedFace && pipe.canFit(stack, pipePos.relative(incomingOpposite), incomingFace))
+				if(incomingOpposite != backloggedFace && pipe.canFit(stack, incomingOpposite))
 					return incomingOpposite;
 			}
 
-			List<Direction> sides = new ArrayList<>(HORIZONTAL_SIDES_LIST);
-			sides.remove(incomingFace);
-			sides.remove(incomingOpposite);
+			Direction[] sides = pipe.routingSides;
+			int count = 0;
+			for(Direction side : MiscUtil.HORIZONTALS)
+				if(side != incomingFace && side != incomingOpposite)
+					sides[count++] = side;
 
-			Random rng = new Random(rngSeed);
-			rngSeed = rng.nextLong();
-			Collections.shuffle(sides, rng);
-			for(Direction side : sides) {
-				if(side != backloggedFace && pipe.canFit(stack, pipePos.relative(side), side.getOpposite()))
+			rngSeed = shuffleSides(sides, count, rngSeed);
+			for(int i = 0; i < count; i++) {
+				Direction side = sides[i];
+				if(side != backloggedFace && pipe.canFit(stack, side))
 					return side;
 			}
 
-			if(incomingFace != Direction.UP && backloggedFace != Direction.UP && pipe.canFit(stack, pipePos.relative(Direction.UP), Direction.DOWN))
+			if(incomingFace != Direction.UP && backloggedFace != Direction.UP && pipe.canFit(stack, Direction.UP))
 				return Direction.UP;
 
 			if(backloggedFace != null)
@@ -472,6 +621,47 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 			return null;
 		}
 
+		/**
+		 * Does the same as seeding a Random with the given seed, taking the next seed from it with nextLong and
+		 * then passing it to Collections.shuffle, without allocating either. Keeps routing identical to what it
+		 * has always been, which matters since clients run it too. Returns the next seed.
+		 */
+		private static long shuffleSides(Direction[] sides, int count, long seed) {
+			long state = (seed ^ RNG_MULTIPLIER) & RNG_MASK;
+
+			state = nextRngState(state);
+			long nextSeed = (long) (int) (state >>> 16) << 32;
+			state = nextRngState(state);
+			nextSeed += (int) (state >>> 16);
+
+			for(int i = count; i > 1; i--) {
+				state = nextRngState(state);
+				int bits = (int) (state >>> 17);
+				int j;
+
+				if((i & (i - 1)) == 0)
+					j = (int) ((i * (long) bits) >> 31);
+				else {
+					j = bits % i;
+					while(bits - j + (i - 1) < 0) {
+						state = nextRngState(state);
+						bits = (int) (state >>> 17);
+						j = bits % i;
+					}
+				}
+
+				Direction swap = sides[i - 1];
+				sides[i - 1] = sides[j];
+				sides[j] = swap;
+			}
+
+			return nextSeed;
+		}
+
+		private static long nextRngState(long state) {
+			return (state * RNG_MULTIPLIER + RNG_ADDEND) & RNG_MASK;
+		}
+
 		public float getTimeFract(float partial) {
 			return (ticksInPipe + partial) / PipesModule.effectivePipeSpeed;
 		}
@@ -484,6 +674,7 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 			cmp.putInt(TAG_BACKLOGGED, backloggedFace != null ? backloggedFace.ordinal() : -1);
 			cmp.putLong(TAG_RNG_SEED, rngSeed);
 			cmp.putInt(TAG_TIME_IN_WORLD, timeInWorld);
+			cmp.putInt(TAG_NET_ID, netId);
 		}
 
 		public static PipeItem readFromNBT(CompoundTag cmp) {
@@ -498,10 +689,75 @@ public class PipeBlockEntity extends SimpleInventoryBlockEntity {
 			
 			int backloggedId = cmp.getInt(TAG_BACKLOGGED);
 			item.backloggedFace = backloggedId == -1 ? null : Direction.values()[backloggedId];
+			item.netId = cmp.contains(TAG_NET_ID) ? cmp.getInt(TAG_NET_ID) : -1;
 			
 			return item;
 		}
 
+		public void writeToBuf(FriendlyByteBuf buf) {
+			buf.writeVarInt(netId);
+			buf.writeItem(stack);
+			buf.writeByte(incomingFace.ordinal());
+			buf.writeByte(outgoingFace == null ? -1 : outgoingFace.ordinal());
+			buf.writeByte(backloggedFace == null ? -1 : backloggedFace.ordinal());
+			buf.writeLong(rngSeed);
+			buf.writeVarInt(ticksInPipe);
+			buf.writeVarInt(timeInWorld);
+		}
+
+		public static PipeItem readFromBuf(FriendlyByteBuf buf) {
+			int netId = buf.readVarInt();
+			ItemStack stack = buf.readItem();
+			Direction inFace = Direction.values()[buf.readByte()];
+			int outgoingId = buf.readByte();
+			int backloggedId = buf.readByte();
+			long rngSeed = buf.readLong();
+
+			PipeItem item = new PipeItem(stack, inFace, rngSeed);
+			item.netId = netId;
+			item.outgoingFace = outgoingId == -1 ? null : Direction.values()[outgoingId];
+			item.backloggedFace = backloggedId == -1 ? null : Direction.values()[backloggedId];
+			item.ticksInPipe = buf.readVarInt();
+			item.timeInWorld = buf.readVarInt();
+
+			return item;
+		}
+
+	}
+
+	/**
+	 * Items that entered and left a pipe during a tick. Only these are sent to clients, which run the
+	 * item movement themselves, instead of the whole pipe contents every time something changes.
+	 */
+	public static class PipeDelta {
+
+		public final List<PipeItem> added;
+		public final int[] removed;
+
+		public PipeDelta(List<PipeItem> added, int[] removed) {
+			this.added = added;
+			this.removed = removed;
+		}
+
+		public static PipeDelta readDelta(FriendlyByteBuf buf, Field field) {
+			int[] removed = buf.readVarIntArray();
+
+			int addedCount = buf.readVarInt();
+			List<PipeItem> added = new ArrayList<>(addedCount);
+			for(int i = 0; i < addedCount; i++)
+				added.add(PipeItem.readFromBuf(buf));
+
+			return new PipeDelta(added, removed);
+		}
+
+		public static void writeDelta(FriendlyByteBuf buf, Field field, PipeDelta delta) {
+			buf.writeVarIntArray(delta.removed);
+
+			buf.writeVarInt(delta.added.size());
+			for(PipeItem item : delta.added)
+				item.writeToBuf(buf);
+		}
+
 	}
 
 	public enum ConnectionType {
@@ -1,10 +1,11 @@
 package vazkii.quark.addons.oddities.capability;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.core.Vec3i;
@@ -18,51 +19,132 @@ import vazkii.quark.api.IMagnetTracker;
  */
 public class MagnetTracker implements IMagnetTracker {
 
-    private final Multimap<BlockPos, Force> forcesActing = HashMultimap.create();
+    // Forces are kept in flat arrays that are reused from tick to tick, so big magnet contraptions don't make garbage.
+    // Every tracked position gets a slot with its net force, and a linked list (by index) of the forces acting on it.
+    private final Long2IntOpenHashMap slots = new Long2IntOpenHashMap();
+    private long[] positions = new long[16];
+    private int[] netForces = new int[16 * 3];
+    private int[] firstForce = new int[16];
+    private int slotCount = 0;
+
+    private long[] forceOrigins = new long[16];
+    private byte[] forceDirections = new byte[16];
+    private boolean[] forcePushing = new boolean[16];
+    private int[] forceDistances = new int[16];
+    private int[] nextForce = new int[16];
+    private int forceCount = 0;
+
+    private final BlockPos.MutableBlockPos originPos = new BlockPos.MutableBlockPos();
 
     private final Level world;
 
     public MagnetTracker(Level world) {
         this.world = world;
+        slots.defaultReturnValue(-1);
     }
 
     @Override
     public Vec3i getNetForce(BlockPos pos) {
-        Vec3i net = Vec3i.ZERO;
-        for (Force force : forcesActing.get(pos))
-            net = force.add(net);
-        return net;
+        int slot = slots.get(pos.asLong());
+        if (slot == -1)
+            return Vec3i.ZERO;
+
+        return new Vec3i(netForces[slot * 3], netForces[slot * 3 + 1], netForces[slot * 3 + 2]);
     }
 
     @Override
     public void applyForce(BlockPos pos, int magnitude, boolean pushing, Direction dir, int distance, BlockPos origin) {
-        forcesActing.put(pos, new Force(magnitude, pushing, dir, distance, origin));
+        long key = pos.asLong();
+        int slot = slots.get(key);
+        if (slot == -1) {
+            slot = slotCount++;
+            if (slot == positions.length)
+                growSlots();
+
+            slots.put(key, slot);
+            positions[slot] = key;
+            netForces[slot * 3] = 0;
+            netForces[slot * 3 + 1] = 0;
+            netForces[slot * 3 + 2] = 0;
+            firstForce[slot] = -1;
+        }
+
+        netForces[slot * 3] += dir.getStepX() * magnitude;
+        netForces[slot * 3 + 1] += dir.getStepY() * magnitude;
+        netForces[slot * 3 + 2] += dir.getStepZ() * magnitude;
+
+        int force = forceCount++;
+        if (force == forceOrigins.length)
+            growForces();
+
+        forceOrigins[force] = origin.asLong();
+        forceDirections[force] = (byte) dir.ordinal();
+        forcePushing[force] = pushing;
+        forceDistances[force] = distance;
+        nextForce[force] = firstForce[slot];
+        firstForce[slot] = force;
     }
 
     @Override
     public void actOnForces(BlockPos pos) {
-        Vec3i net = getNetForce(pos);
+        int slot = slots.get(pos.asLong());
+        if (slot != -1)
+            actOnSlot(slot);
+    }
+
+    @Override
+    public void actOnAllForces() {
+        for (int slot = 0; slot < slotCount; slot++)
+            actOnSlot(slot);
+    }
+
+    private void actOnSlot(int slot) {
+        int x = netForces[slot * 3];
+        int y = netForces[slot * 3 + 1];
+        int z = netForces[slot * 3 + 2];
 
-        if (net.equals(Vec3i.ZERO))
+        if (x == 0 && y == 0 && z == 0)
             return;
 
-        Direction target = Direction.getNearest(net.getX(), net.getY(), net.getZ());
+        Direction target = Direction.getNearest(x, y, z);
 
-        for (Force force : forcesActing.get(pos)) {
-            if (force.getDirection() == target) {
-                BlockState origin = world.getBlockState(force.getOrigin());
-                world.blockEvent(force.getOrigin(), origin.getBlock(), force.isPushing() ? 0 : 1, force.getDistance());
+        for (int force = firstForce[slot]; force != -1; force = nextForce[force]) {
+            if (forceDirections[force] == target.ordinal()) {
+                originPos.set(forceOrigins[force]);
+                BlockState origin = world.getBlockState(originPos);
+                world.blockEvent(originPos.immutable(), origin.getBlock(), forcePushing[force] ? 0 : 1, forceDistances[force]);
             }
         }
     }
 
     @Override
     public Collection<BlockPos> getTrackedPositions() {
-        return forcesActing.keySet();
+        List<BlockPos> tracked = new ArrayList<>(slotCount);
+        for (int slot = 0; slot < slotCount; slot++)
+            tracked.add(BlockPos.of(positions[slot]));
+        return tracked;
     }
 
     @Override
     public void clear() {
-        forcesActing.clear();
+        slots.clear();
+        slotCount = 0;
+        forceCount = 0;
+    }
+
+    private void growSlots() {
+        int size = positions.length * 2;
+        positions = Arrays.copyOf(positions, size);
+        netForces = Arrays.copyOf(netForces, size * 3);
+        firstForce = Arrays.copyOf(firstForce, size);
+    }
+
+    private void growForces() {
+        int size = forceOrigins.length * 2;
+        forceOrigins = Arrays.copyOf(forceOrigins, size);
+        forceDirections = Arrays.copyOf(forceDirections, size);
+        forcePushing = Arrays.copyOf(forcePushing, size);
+        forceDistances = Arrays.copyOf(forceDistances, size);
+        nextForce = Arrays.copyOf(nextForce, size);
     }
 }
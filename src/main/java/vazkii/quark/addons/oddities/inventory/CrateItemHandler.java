@@ -0,0 +1,26 @@
+package vazkii.quark.addons.oddities.inventory;
+
+import javax.annotation.Nonnull;
+
+import net.minecraft.core.Direction;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.items.wrapper.SidedInvWrapper;
+import vazkii.quark.addons.oddities.block.be.CrateBlockEntity;
+
+public class CrateItemHandler extends SidedInvWrapper {
+
+	private final CrateBlockEntity crate;
+
+	public CrateItemHandler(CrateBlockEntity crate) {
+		super(crate, Direction.UP);
+		this.crate = crate;
+	}
+
+	// The crate doesn't care which slot things go in, so anything inserted gets merged in wherever it fits
+	@Nonnull
+	@Override
+	public ItemStack insertItem(int slot, @Nonnull ItemStack stack, boolean simulate) {
+		return crate.insert(stack, simulate);
+	}
+
+}
@@ -78,7 +78,7 @@ public class CrateMenu extends AbstractContainerMenu {
 			if (index < displayedSlots) {
 				if(!this.moveItemStackTo(itemstack1, displayedSlots, slots.size(), true))
 					empty = true;
-				crate.setChanged();
+				crate.recountItems();
 			} else {
 				if(MiscUtil.canPutIntoInv(itemstack, crate.getLevel(), crate.getBlockPos(), crate, Direction.UP, true)) {
 					MiscUtil.putIntoInv(itemstack,  crate.getLevel(), crate.getBlockPos(),crate, Direction.UP, false, false);
@@ -192,6 +192,12 @@ public class CrateMenu extends AbstractContainerMenu {
 		public ItemStack remove(int amount) {
 			return container.removeItem(getTarget(), amount);
 		}
+
+		@Override
+		public void setChanged() {
+			// Stacks in the crate might have been edited in place
+			crate.recountItems();
+		}
 		
 		@Override
 		public boolean mayPlace(ItemStack stack) {
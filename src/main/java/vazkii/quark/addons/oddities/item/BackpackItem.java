@@ -94,12 +94,20 @@ public class BackpackItem extends DyeableArmorItem implements IQuarkItem, IItemC
 
 		IItemHandler handler = handlerOpt.orElse(null); 
 		for(int i = 0; i < handler.getSlots(); i++)
-			if(!handler.getStackInSlot(i).isEmpty())
+			if(!peekStackInSlot(handler, i).isEmpty())
 				return true;
 
 		return false;
 	}
 	
+	// Skips copying the stack when the backpack's own handler can hand it out directly
+	private static ItemStack peekStackInSlot(IItemHandler handler, int slot) {
+		if(handler instanceof ProxiedItemStackHandler proxied)
+			return proxied.peekStackInSlot(slot);
+
+		return handler.getStackInSlot(slot);
+	}
+	
 	@Override
 	public boolean canBeDepleted() {
 		return false;
@@ -131,8 +139,9 @@ public class BackpackItem extends DyeableArmorItem implements IQuarkItem, IItemC
 				if(BackpackModule.itemsInBackpackTick) {
 					LazyOptional<IItemHandler> handlerOpt  = stack.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY, null);
 					IItemHandler handler = handlerOpt.orElse(null); 
+					// Same as always, whatever ticking changes on these isn't written back to the backpack
 					for(int i = 0; i < handler.getSlots(); i++) {
-						ItemStack inStack = handler.getStackInSlot(i);
+						ItemStack inStack = peekStackInSlot(handler, i);
 						if(!inStack.isEmpty())
 							inStack.getItem().inventoryTick(inStack, worldIn, entityIn, i, false);
 					}
@@ -1,10 +1,13 @@
 package vazkii.quark.addons.oddities.magnetsystem;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
@@ -12,7 +15,9 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
 
+import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientPacketListener;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.core.NonNullList;
@@ -31,10 +36,14 @@ import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.material.PushReaction;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.client.event.RecipesUpdatedEvent;
 import net.minecraftforge.common.util.LazyOptional;
-import net.minecraftforge.event.TickEvent.ClientTickEvent;
+import net.minecraftforge.event.OnDatapackSyncEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
 import net.minecraftforge.event.TickEvent.Phase;
 import net.minecraftforge.event.TickEvent.WorldTickEvent;
+import net.minecraftforge.event.server.ServerStartedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
 import net.minecraftforge.fml.common.Mod.EventBusSubscriber.Bus;
@@ -50,7 +59,14 @@ import vazkii.quark.base.module.ModuleLoader;
 @EventBusSubscriber(bus = Bus.FORGE, modid = Quark.MOD_ID)
 public class MagnetSystem {
 	
-	private static HashSet<Block> magnetizableBlocks = new HashSet<>();
+	// Ids of the blocks derived to be magnetizable from the recipes. Never modified once published, a new set replaces it
+	private static volatile BitSet magnetizableBlocks = new BitSet();
+
+	private static RecipeManager lastRecipeManager;
+	private static int loadGeneration = 0;
+
+	@OnlyIn(Dist.CLIENT)
+	private static boolean clientTagsBound;
 	
 	private static final HashMap<Block, IMagnetMoveAction> BLOCK_MOVE_ACTIONS = new HashMap<>();
 	
@@ -74,27 +90,55 @@ public class MagnetSystem {
 		if (event.phase == Phase.START) {
 			getCapability(event.world).ifPresent(IMagnetTracker::clear);
 		} else {
-			if (magnetizableBlocks.isEmpty())
-				loadMagnetizableBlocks(event.world);
 			getCapability(event.world).ifPresent(magnetTracker -> {
-				for (BlockPos pos : magnetTracker.getTrackedPositions())
-					magnetTracker.actOnForces(pos);
+				magnetTracker.actOnAllForces();
 				magnetTracker.clear();
 			});
 		}
 	}
 
+	@SubscribeEvent
+	public static void serverStarted(ServerStartedEvent event) {
+		loadMagnetizableBlocks(event.getServer().getRecipeManager());
+	}
+
+	@SubscribeEvent
+	public static void datapackSync(OnDatapackSyncEvent event) {
+		// No player means this is a /reload, rather than someone joining
+		if (event.getPlayer() == null)
+			loadMagnetizableBlocks(event.getPlayerList().getServer().getRecipeManager());
+	}
+
 	@SubscribeEvent
 	@OnlyIn(Dist.CLIENT)
-	public static void tick(ClientTickEvent event) {
-		if(!ModuleLoader.INSTANCE.isModuleEnabled(MagnetsModule.class))
-			return;
-		
-		if (Minecraft.getInstance().level == null) {
-			magnetizableBlocks.clear();
+	public static void recipesUpdated(RecipesUpdatedEvent event) {
+		// When joining, recipes arrive before tags, so tag ingredients can't be resolved yet. tagsUpdated picks it up
+		if (clientTagsBound)
+			loadMagnetizableBlocks(event.getRecipeManager());
+	}
+
+	@SubscribeEvent
+	@OnlyIn(Dist.CLIENT)
+	public static void tagsUpdated(TagsUpdatedEvent event) {
+		Minecraft mc = Minecraft.getInstance();
+		ClientPacketListener connection = mc.getConnection();
+		if (mc.isSameThread() && connection != null) {
+			clientTagsBound = true;
+			loadMagnetizableBlocks(connection.getRecipeManager());
 		}
 	}
 
+	@SubscribeEvent
+	@OnlyIn(Dist.CLIENT)
+	public static void loggedOut(ClientPlayerNetworkEvent.LoggedOutEvent event) {
+		clientTagsBound = false;
+	}
+
+	public static void reloadMagnetizableBlocks() {
+		if (lastRecipeManager != null)
+			loadMagnetizableBlocks(lastRecipeManager);
+	}
+
 
 	public static void applyForce(Level world, BlockPos pos, int magnitude, boolean pushing, Direction dir, int distance, BlockPos origin) {
 		getCapability(world).ifPresent(magnetTracker ->
@@ -123,38 +167,68 @@ public class MagnetSystem {
 				return false;
 		}
 		
-		return block != MagnetsModule.magnet && (magnetizableBlocks.contains(block) || BLOCK_MOVE_ACTIONS.containsKey(block) || block instanceof IMagnetMoveAction);
+		return block != MagnetsModule.magnet && (magnetizableBlocks.get(Registry.BLOCK.getId(block)) || BLOCK_MOVE_ACTIONS.containsKey(block) || block instanceof IMagnetMoveAction);
 	}
 	
-	private static void loadMagnetizableBlocks(Level world) {
-		RecipeManager manager = world.getRecipeManager();
-		if(!manager.getRecipes().isEmpty()) {
-			Collection<Recipe<?>> recipes = manager.getRecipes();
-
-			Multimap<Item, Item> recipeDigestion = HashMultimap.create();
-
-			for(Recipe<?> recipe : recipes) {
-				if(recipe == null || recipe.getResultItem() == null || recipe.getIngredients() == null)
-					continue;
-				
-				Item out = recipe.getResultItem().getItem();
-
-				NonNullList<Ingredient> ingredients = recipe.getIngredients();
-				for(Ingredient ingredient : ingredients) {
-					for (ItemStack inStack : ingredient.getItems())
-						recipeDigestion.put(inStack.getItem(), out);
-				}
+	/**
+	 * Works out the magnetizable blocks from the given recipes on a background thread, since resolving every
+	 * ingredient can take a while in big packs. Tags are already bound by the time this is called and don't change
+	 * until the next reload, which starts a new generation. The current set stays in use until the new one is done.
+	 */
+	private static void loadMagnetizableBlocks(RecipeManager manager) {
+		int generation = startLoad(manager);
+
+		List<Recipe<?>> recipes = Collections.unmodifiableList(new ArrayList<>(manager.getRecipes()));
+		List<Item> magneticDerivationList = MiscUtil.massRegistryGet(MagnetsModule.magneticDerivationList, Registry.ITEM);
+		List<Item> magneticWhitelist = MiscUtil.massRegistryGet(MagnetsModule.magneticWhitelist, Registry.ITEM);
+		List<Item> magneticBlacklist = MiscUtil.massRegistryGet(MagnetsModule.magneticBlacklist, Registry.ITEM);
+
+		CompletableFuture.supplyAsync(() -> findMagnetizableBlocks(digestRecipes(recipes), magneticDerivationList, magneticWhitelist, magneticBlacklist), Util.backgroundExecutor())
+		.whenComplete((blocks, err) -> {
+			if (err != null)
+				Quark.LOG.warn("Failed to find magnetizable blocks", err);
+			else publishMagnetizableBlocks(blocks, generation);
+		});
+	}
+
+	private static synchronized int startLoad(RecipeManager manager) {
+		lastRecipeManager = manager;
+		return ++loadGeneration;
+	}
+
+	private static Multimap<Item, Item> digestRecipes(Collection<Recipe<?>> recipes) {
+		Multimap<Item, Item> recipeDigestion = HashMultimap.create();
+
+		for(Recipe<?> recipe : recipes) {
+			if(recipe == null || recipe.getResultItem() == null || recipe.getIngredients() == null)
+				continue;
+
+			Item out = recipe.getResultItem().getItem();
+
+			NonNullList<Ingredient> ingredients = recipe.getIngredients();
+			for(Ingredient ingredient : ingredients) {
+				for (ItemStack inStack : ingredient.getItems())
+					recipeDigestion.put(inStack.getItem(), out);
 			}
+		}
 
+		return recipeDigestion;
+	}
 
-			List<Item> magneticDerivationList = MiscUtil.massRegistryGet(MagnetsModule.magneticDerivationList, Registry.ITEM);
-			List<Item> magneticWhitelist = MiscUtil.massRegistryGet(MagnetsModule.magneticWhitelist, Registry.ITEM);
-			List<Item> magneticBlacklist = MiscUtil.massRegistryGet(MagnetsModule.magneticBlacklist, Registry.ITEM);
-			
+	private static synchronized void publishMagnetizableBlocks(BitSet blocks, int generation) {
+		// A reload started after this one did, so this is already out of date
+		if (generation == loadGeneration)
+			magnetizableBlocks = blocks;
+	}
+
+	private static BitSet findMagnetizableBlocks(Multimap<Item, Item> recipeDigestion, List<Item> magneticDerivationList, List<Item> magneticWhitelist, List<Item> magneticBlacklist) {
+		BitSet magnetizable = new BitSet();
+
+		if(!recipeDigestion.isEmpty()) {
 			Streams.concat(magneticDerivationList.stream(), magneticWhitelist.stream())
 				.filter(i -> i instanceof BlockItem)
 				.map(i -> ((BlockItem) i).getBlock())
-				.forEach(magnetizableBlocks::add);
+				.forEach(b -> magnetizable.set(Registry.BLOCK.getId(b)));
 			
 			Set<Item> scanned = Sets.newHashSet(magneticDerivationList);
 			List<Item> magnetizableToScan = Lists.newArrayList(magneticDerivationList);
@@ -169,11 +243,13 @@ public class MagnetSystem {
 							magnetizableToScan.add(candidate);
 
 							if(candidate instanceof BlockItem && !magneticBlacklist.contains(candidate))
-								magnetizableBlocks.add(((BlockItem) candidate).getBlock());
+								magnetizable.set(Registry.BLOCK.getId(((BlockItem) candidate).getBlock()));
 						}
 					}
 				}
 			}
 		}
+
+		return magnetizable;
 	}
 }
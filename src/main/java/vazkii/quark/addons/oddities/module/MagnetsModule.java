@@ -15,6 +15,7 @@ import vazkii.quark.addons.oddities.block.MovingMagnetizedBlock;
 import vazkii.quark.addons.oddities.block.be.MagnetBlockEntity;
 import vazkii.quark.addons.oddities.block.be.MagnetizedBlockBlockEntity;
 import vazkii.quark.addons.oddities.client.render.be.MagnetizedBlockRenderer;
+import vazkii.quark.addons.oddities.magnetsystem.MagnetSystem;
 import vazkii.quark.base.module.LoadModule;
 import vazkii.quark.base.module.ModuleCategory;
 import vazkii.quark.base.module.QuarkModule;
@@ -47,6 +48,11 @@ public class MagnetsModule extends QuarkModule {
 		RegistryHelper.register(magnetizedBlockType, "magnetized_block");
 	}
 	
+	@Override
+	public void configChanged() {
+		MagnetSystem.reloadMagnetizableBlocks();
+	}
+	
 	@Override
 	@OnlyIn(Dist.CLIENT)
 	public void clientSetup() {
@@ -1,18 +1,23 @@
 package vazkii.quark.addons.oddities.module;
 
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.blockentity.BlockEntityRenderers;
 import net.minecraft.client.resources.model.ModelResourceLocation;
+import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.client.model.ForgeModelBakery;
+import vazkii.arl.network.MessageSerializer;
 import vazkii.arl.util.RegistryHelper;
 import vazkii.quark.addons.oddities.block.PipeBlock;
 import vazkii.quark.addons.oddities.block.be.PipeBlockEntity;
 import vazkii.quark.addons.oddities.client.render.be.PipeRenderer;
 import vazkii.quark.base.Quark;
+import vazkii.quark.base.client.handler.NetworkProfilingHandler;
 import vazkii.quark.base.module.LoadModule;
 import vazkii.quark.base.module.ModuleCategory;
 import vazkii.quark.base.module.QuarkModule;
@@ -31,6 +36,11 @@ public class PipesModule extends QuarkModule {
 	
 	@Config(description = "When items eject or are absorbed by pipes, should they make sounds?")
 	public static boolean doPipesWhoosh = true;
+
+	@Config(description = "How often, in ticks, pipes with an open end look for items to take in. Pipes without open ends never look.\n"
+			+ "Raising this makes lots of pipes cheaper to run, but fast moving items may get past an open end without being taken in.")
+	@Config.Min(1)
+	public static int intakeInterval = 1;
     
 	public static Block pipe;
 	
@@ -49,12 +59,26 @@ public class PipesModule extends QuarkModule {
     	effectivePipeSpeed = pipeSpeed * 2;
     }
 
+	@Override
+	public void setup() {
+		MessageSerializer.mapHandlers(PipeBlockEntity.PipeDelta.class, PipeBlockEntity.PipeDelta::readDelta, PipeBlockEntity.PipeDelta::writeDelta);
+	}
+
 	@Override
 	@OnlyIn(Dist.CLIENT)
 	public void clientSetup() {
 		BlockEntityRenderers.register(blockEntityType, PipeRenderer::new);
 	}
 
+	@OnlyIn(Dist.CLIENT)
+	public static void applyDeltaClient(BlockPos pos, PipeBlockEntity.PipeDelta delta) {
+		Level level = Minecraft.getInstance().level;
+		if(level != null && level.getBlockEntity(pos) instanceof PipeBlockEntity pipe)
+			pipe.applyDelta(delta);
+
+		NetworkProfilingHandler.receive("pipe_delta");
+	}
+
     @Override
     @OnlyIn(Dist.CLIENT)
     public void modelRegistry() {
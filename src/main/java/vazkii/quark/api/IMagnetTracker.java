@@ -17,6 +17,11 @@ public interface IMagnetTracker {
 
     void actOnForces(BlockPos pos);
 
+    default void actOnAllForces() {
+        for (BlockPos pos : getTrackedPositions())
+            actOnForces(pos);
+    }
+
     Collection<BlockPos> getTrackedPositions();
 
     void clear();
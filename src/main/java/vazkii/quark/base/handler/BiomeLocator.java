@@ -0,0 +1,121 @@
+package vazkii.quark.base.handler;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Registry;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.BiomeSource;
+import net.minecraft.world.level.biome.Climate;
+import net.minecraft.world.level.chunk.ChunkGenerator;
+import vazkii.quark.base.Quark;
+
+/**
+ * Asynchronous version of {@link MiscUtil#locateBiome}. Searches run on the background executor against
+ * the level's biome source and climate sampler, which only depend on the seed and are safe to sample off-thread.
+ * Results are shared by every search for the same biome starting in the same region.
+ */
+public final class BiomeLocator {
+
+	// Searches starting within the same 512x512 region share a result
+	private static final int REGION_SHIFT = 9;
+	private static final int CACHE_SIZE = 512;
+
+	private static final Cache<SearchKey, CompletableFuture<Optional<BlockPos>>> searches = CacheBuilder.newBuilder()
+			.maximumSize(CACHE_SIZE)
+			.build();
+
+	/**
+	 * Starts (or joins) a search for the given biome. Returns null if the biome doesn't exist.
+	 */
+	public static CompletableFuture<Optional<BlockPos>> locate(ServerLevel world, ResourceLocation biomeToFind, BlockPos start, int searchRadius, int searchIncrement) {
+		Biome biome = world.getServer().registryAccess().registryOrThrow(Registry.BIOME_REGISTRY).getOptional(biomeToFind).orElse(null);
+		if(biome == null)
+			return null;
+
+		SearchKey key = new SearchKey(world.dimension(), world.getSeed(), biomeToFind, start.getX() >> REGION_SHIFT, start.getZ() >> REGION_SHIFT, searchRadius, searchIncrement);
+
+		CompletableFuture<Optional<BlockPos>> search;
+		try {
+			search = searches.get(key, () -> startSearch(world, biome, start, searchRadius, searchIncrement));
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Failed to start biome search for " + biomeToFind, e.getCause());
+		}
+
+		// Don't hold on to failed searches so they get retried next time
+		if(search.isCompletedExceptionally())
+			searches.invalidate(key);
+
+		return search;
+	}
+
+	public static void clear() {
+		searches.invalidateAll();
+	}
+
+	private static CompletableFuture<Optional<BlockPos>> startSearch(ServerLevel world, Biome biome, BlockPos start, int searchRadius, int searchIncrement) {
+		ChunkGenerator generator = world.getChunkSource().getGenerator();
+		BiomeSource source = generator.getBiomeSource();
+		Climate.Sampler sampler = generator.climateSampler();
+		Random random = new Random(world.getSeed() ^ start.asLong());
+
+		return CompletableFuture.supplyAsync(() -> {
+			BlockPos found = source.findBiomeHorizontal(start.getX(), start.getY(), start.getZ(), searchRadius, searchIncrement, b -> b == biome, random, true, sampler);
+			return Optional.ofNullable(found);
+		}, Util.backgroundExecutor()).whenComplete((res, err) -> {
+			if(err != null)
+				Quark.LOG.warn("Failed to locate biome " + biome.getRegistryName(), err);
+		});
+	}
+
+	private static class SearchKey {
+
+		private final ResourceKey<Level> dimension;
+		private final long seed;
+		private final ResourceLocation biome;
+		private final int regionX, regionZ;
+		private final int radius, increment;
+
+		public SearchKey(ResourceKey<Level> dimension, long seed, ResourceLocation biome, int regionX, int regionZ, int radius, int increment) {
+			this.dimension = dimension;
+			this.seed = seed;
+			this.biome = biome;
+			this.regionX = regionX;
+			this.regionZ = regionZ;
+			this.radius = radius;
+			this.increment = increment;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(obj == this)
+				return true;
+			if(!(obj instanceof SearchKey))
+				return false;
+
+			SearchKey other = (SearchKey) obj;
+			return dimension == other.dimension && seed == other.seed && biome.equals(other.biome)
+					&& regionX == other.regionX && regionZ == other.regionZ
+					&& radius == other.radius && increment == other.increment;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(dimension, seed, biome, regionX, regionZ, radius, increment);
+		}
+
+	}
+
+}
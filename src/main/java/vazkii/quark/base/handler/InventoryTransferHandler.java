@@ -1,13 +1,20 @@
 package vazkii.quark.base.handler;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiPredicate;
 
 import javax.annotation.Nonnull;
 
 import org.apache.commons.lang3.tuple.Pair;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import net.minecraft.world.Container;
 import net.minecraft.world.entity.player.Inventory;
 import net.minecraft.world.entity.player.Player;
@@ -16,12 +23,12 @@ import net.minecraft.world.inventory.Slot;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraftforge.items.IItemHandler;
-import net.minecraftforge.items.ItemHandlerHelper;
 import net.minecraftforge.items.SlotItemHandler;
 import net.minecraftforge.items.wrapper.InvWrapper;
 import vazkii.quark.api.ITransferManager;
 import vazkii.quark.api.QuarkCapabilities;
 import vazkii.quark.base.module.ModuleLoader;
+import vazkii.quark.base.util.ItemKey;
 import vazkii.quark.content.management.module.EasyTransferingModule;
 
 public class InventoryTransferHandler {
@@ -92,6 +99,9 @@ public class InventoryTransferHandler {
 
 		public final List<Pair<IItemHandler, Double>> itemHandlers = new ArrayList<>();
 
+		// Built the first time a handler is looked at, and kept up to date by the inserts this transfer does
+		private final Map<IItemHandler, TransferIndex> indexes = new IdentityHashMap<>();
+
 		public Transfer(Player player, boolean smart/*, boolean useContainer*/) {
 			this.player = player;
 			//			this.useContainer = useContainer;
@@ -114,26 +124,7 @@ public class InventoryTransferHandler {
 		}
 
 		public void smartTransfer() {
-			transfer((stack, handler) -> {
-				int slots = handler.getSlots();
-				for(int i = 0; i < slots; i++) {
-					ItemStack stackAt = handler.getStackInSlot(i);
-					if(stackAt.isEmpty())
-						continue;
-
-					boolean itemEqual = stack.getItem() == stackAt.getItem();
-					boolean damageEqual = stack.getDamageValue() == stackAt.getDamageValue();
-					boolean nbtEqual = ItemStack.tagMatches(stackAt, stack);
-
-					if(itemEqual && damageEqual && nbtEqual)
-						return true;
-
-					if(stack.isDamageableItem() && stack.getMaxStackSize() == 1 && itemEqual && nbtEqual)
-						return true;
-				}
-
-				return false;
-			});
+			transfer((stack, handler) -> getIndex(handler).contains(stack));
 		}
 
 		public void roughTransfer() {
@@ -199,7 +190,7 @@ public class InventoryTransferHandler {
 
 		public ItemStack insertInHandler(IItemHandler handler, final ItemStack stack, TransferPredicate predicate) {
 			if(predicate.test(stack, handler)) {
-				ItemStack retStack = ItemHandlerHelper.insertItemStacked(handler, stack, false);
+				ItemStack retStack = getIndex(handler).insert(stack);
 				if(!retStack.isEmpty())
 					retStack = retStack.copy();
 				else 
@@ -211,6 +202,10 @@ public class InventoryTransferHandler {
 			return stack;
 		}
 
+		public TransferIndex getIndex(IItemHandler handler) {
+			return indexes.computeIfAbsent(handler, TransferIndex::new);
+		}
+
 	}
 
 	public static class Restock extends Transfer {
@@ -239,6 +234,89 @@ public class InventoryTransferHandler {
 		}
 	}
 
+	/**
+	 * Keeps track of which items a handler holds, which slots could take more of each of them, and which
+	 * slots are empty. Lets a transfer find where a stack can go without walking every slot of the handler for every stack.
+	 */
+	public static class TransferIndex {
+
+		private final IItemHandler handler;
+
+		private final Map<ItemKey, IntSet> damageValues = new HashMap<>();
+		private final Map<ItemKey, IntList> openSlots = new HashMap<>();
+		private final IntList emptySlots = new IntArrayList();
+
+		public TransferIndex(IItemHandler handler) {
+			this.handler = handler;
+
+			int slots = handler.getSlots();
+			for(int i = 0; i < slots; i++) {
+				if(handler.getStackInSlot(i).isEmpty())
+					emptySlots.add(i);
+				else record(i);
+			}
+		}
+
+		public boolean contains(ItemStack stack) {
+			IntSet damages = damageValues.get(new ItemKey(stack));
+			if(damages == null)
+				return false;
+
+			return (stack.isDamageableItem() && stack.getMaxStackSize() == 1) || damages.contains(stack.getDamageValue());
+		}
+
+		/**
+		 * Same as {@link net.minecraftforge.items.ItemHandlerHelper#insertItemStacked}: tops up the slots
+		 * that already hold the item, then fills empty slots.
+		 */
+		public ItemStack insert(ItemStack stack) {
+			if(stack.isEmpty())
+				return stack;
+
+			if(stack.isStackable()) {
+				IntList open = openSlots.get(new ItemKey(stack));
+				if(open != null)
+					for(int i = 0; i < open.size() && !stack.isEmpty();) {
+						int slot = open.getInt(i);
+						stack = handler.insertItem(slot, stack, false);
+
+						if(isFull(slot))
+							open.removeInt(i);
+						else i++;
+					}
+			}
+
+			for(int i = 0; i < emptySlots.size() && !stack.isEmpty();) {
+				int slot = emptySlots.getInt(i);
+				stack = handler.insertItem(slot, stack, false);
+
+				if(handler.getStackInSlot(slot).isEmpty())
+					i++;
+				else {
+					emptySlots.removeInt(i);
+					record(slot);
+				}
+			}
+
+			return stack;
+		}
+
+		private void record(int slot) {
+			ItemStack stackAt = handler.getStackInSlot(slot);
+			ItemKey key = new ItemKey(stackAt);
+
+			damageValues.computeIfAbsent(key, k -> new IntOpenHashSet()).add(stackAt.getDamageValue());
+			if(stackAt.isStackable() && !isFull(slot))
+				openSlots.computeIfAbsent(key, k -> new IntArrayList()).add(slot);
+		}
+
+		private boolean isFull(int slot) {
+			ItemStack stackAt = handler.getStackInSlot(slot);
+			return stackAt.getCount() >= Math.min(handler.getSlotLimit(slot), stackAt.getMaxStackSize());
+		}
+
+	}
+
 	public static class PlayerInvWrapper extends InvWrapper {
 
 		public PlayerInvWrapper(Container inv) {
@@ -263,7 +341,7 @@ public class InventoryTransferHandler {
 
 	public static class ContainerWrapper extends InvWrapper {
 
-		private final AbstractContainerMenu container;
+		private final Slot[] slots;
 
 		public static IItemHandler provideWrapper(Slot slot, AbstractContainerMenu container) {
 			if (slot instanceof SlotItemHandler) {
@@ -286,7 +364,14 @@ public class InventoryTransferHandler {
 
 		private ContainerWrapper(Container inv, AbstractContainerMenu container) {
 			super(inv);
-			this.container = container;
+
+			// Index the menu's slots by their position in the inventory, the first slot found for a position wins
+			slots = new Slot[inv.getContainerSize()];
+			for(Slot slot : container.slots) {
+				int index = slot.getSlotIndex();
+				if(slot.container == inv && index >= 0 && index < slots.length && slots[index] == null)
+					slots[index] = slot;
+			}
 		}
 
 		@Nonnull
@@ -300,12 +385,10 @@ public class InventoryTransferHandler {
 		}
 
 		private Slot getSlot(int slotId) {
-			Container inv = getInv();
-			for(Slot slot : container.slots)
-				if(slot.container == inv && slot.getSlotIndex() == slotId)
-					return slot;
+			if(slotId < 0 || slotId >= slots.length)
+				return null;
 
-			return null;
+			return slots[slotId];
 		}
 
 	}
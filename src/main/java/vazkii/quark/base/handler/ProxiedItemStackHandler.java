@@ -26,6 +26,11 @@ public class ProxiedItemStackHandler implements IItemHandler, IItemHandlerModifi
 	protected final String key;
 	protected final int size;
 
+	// Decoded stacks for the list they were read from, thrown out if the stack's tag ever stops pointing to that list.
+	// These never leave the handler; callers get copies so changes can only reach the tag through writeStack.
+	private ListTag decodedList;
+	private ItemStack[] decodedStacks;
+
 	public ProxiedItemStackHandler(ItemStack stack) {
 		this(stack, "Inventory", 1);
 	}
@@ -55,13 +60,33 @@ public class ProxiedItemStackHandler implements IItemHandler, IItemHandlerModifi
 		return list;
 	}
 
+	private ItemStack[] getDecodedStacks() {
+		ListTag list = getStackList();
+		if (list != decodedList) {
+			decodedList = list;
+			decodedStacks = new ItemStack[size];
+		}
+
+		return decodedStacks;
+	}
+
 	private void writeStack(int index, @Nonnull ItemStack stack) {
-		getStackList().set(index, stack.serializeNBT());
+		ItemStack[] decoded = getDecodedStacks();
+		// Menus set every slot back after each click, so only the slots that actually changed get serialized
+		if (decoded[index] != null && ItemStack.matches(decoded[index], stack))
+			return;
+
+		decodedList.set(index, stack.serializeNBT());
+		decoded[index] = stack.copy();
 		onContentsChanged(index);
 	}
 
 	private ItemStack readStack(int index) {
-		return ItemStack.of(getStackList().getCompound(index));
+		ItemStack[] decoded = getDecodedStacks();
+		if (decoded[index] == null)
+			decoded[index] = ItemStack.of(decodedList.getCompound(index));
+
+		return decoded[index];
 	}
 
 	@Override
@@ -79,6 +104,16 @@ public class ProxiedItemStackHandler implements IItemHandler, IItemHandlerModifi
 	@Override
 	@Nonnull
 	public ItemStack getStackInSlot(int slot) {
+		validateSlotIndex(slot);
+		return readStack(slot).copy();
+	}
+
+	/**
+	 * The decoded stack in the slot itself, without copying it. Only for looking at the stack, anything changed on it
+	 * won't make it to the owning stack's tag.
+	 */
+	@Nonnull
+	public ItemStack peekStackInSlot(int slot) {
 		validateSlotIndex(slot);
 		return readStack(slot);
 	}
@@ -132,7 +167,7 @@ public class ProxiedItemStackHandler implements IItemHandler, IItemHandlerModifi
 			if (!simulate)
 				writeStack(slot, ItemStack.EMPTY);
 
-			return existing;
+			return simulate ? existing.copy() : existing;
 		} else {
 			if (!simulate)
 				writeStack(slot, ItemHandlerHelper.copyStackWithSize(existing, existing.getCount() - toExtract));
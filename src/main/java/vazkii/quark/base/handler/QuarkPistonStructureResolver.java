@@ -1,19 +1,18 @@
 package vazkii.quark.base.handler;
 
 import java.util.List;
-import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
 
-import org.apache.commons.lang3.tuple.Pair;
-
 import com.google.common.collect.Lists;
 
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.piston.PistonBaseBlock;
 import net.minecraft.world.level.block.piston.PistonStructureResolver;
 import net.minecraft.world.level.block.state.BlockState;
@@ -34,6 +33,12 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 	private final List<BlockPos> toMove = Lists.<BlockPos>newArrayList();
 	private final List<BlockPos> toDestroy = Lists.<BlockPos>newArrayList();
 
+	// Hashed views over toMove/toDestroy so lookups in the line and branching loops don't scan the lists.
+	// The lists themselves stay the source of truth for ordering.
+	private final Long2IntOpenHashMap moveIndex = new Long2IntOpenHashMap();
+	private final LongOpenHashSet destroySet = new LongOpenHashSet();
+	private final Long2ObjectOpenHashMap<BlockState> stateCache = new Long2ObjectOpenHashMap<>();
+
 	public QuarkPistonStructureResolver(PistonStructureResolver parent, Level worldIn, BlockPos posIn, Direction pistonFacing, boolean extending) {
 		super(worldIn, posIn, pistonFacing, extending);
 		this.parent = parent;
@@ -47,6 +52,8 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 			this.moveDirection = pistonFacing.getOpposite();
 			this.blockToMove = posIn.relative(pistonFacing, 2);
 		}
+
+		moveIndex.defaultReturnValue(-1);
 	}
 
 	@Override
@@ -56,38 +63,84 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 
 		toMove.clear();
 		toDestroy.clear();
-		BlockState iblockstate = world.getBlockState(blockToMove);
+		moveIndex.clear();
+		destroySet.clear();
+		stateCache.clear();
+
+		try {
+			BlockState iblockstate = getState(blockToMove);
+
+			if(!PistonBaseBlock.isPushable(iblockstate, world, blockToMove, moveDirection, false, moveDirection)) {
+				if(iblockstate.getPistonPushReaction() == PushReaction.DESTROY) {
+					addToDestroy(blockToMove);
+					return true;
+				} else return false;
+			}
+			else if(!addBlockLine(blockToMove, moveDirection))
+				return false;
+			else {
+				for(int i = 0; i < toMove.size(); ++i) {
+					BlockPos blockpos = toMove.get(i);
+
+					if(addBranchingBlocks(world, blockpos, isBlockBranching(world, blockpos)) == MoveResult.PREVENT)
+						return false;
+				}
 
-		if(!PistonBaseBlock.isPushable(iblockstate, world, blockToMove, moveDirection, false, moveDirection)) {
-			if(iblockstate.getPistonPushReaction() == PushReaction.DESTROY) {
-				toDestroy.add(blockToMove);
 				return true;
-			} else return false;
+			}
+		} finally {
+			// The world can change before the next resolve, so never keep states around
+			stateCache.clear();
 		}
-		else if(!addBlockLine(blockToMove, moveDirection))
-			return false;
-		else {
-			for(int i = 0; i < toMove.size(); ++i) {
-				BlockPos blockpos = toMove.get(i);
+	}
 
-				if(addBranchingBlocks(world, blockpos, isBlockBranching(world, blockpos)) == MoveResult.PREVENT)
-					return false;
-			}
+	private BlockState getState(BlockPos pos) {
+		long key = pos.asLong();
+		BlockState state = stateCache.get(key);
+		if(state == null) {
+			state = world.getBlockState(pos);
+			stateCache.put(key, state);
+		}
 
-			return true;
+		return state;
+	}
+
+	private void addToMove(BlockPos pos) {
+		moveIndex.putIfAbsent(pos.asLong(), toMove.size());
+		toMove.add(pos);
+	}
+
+	private void removeFromMove(BlockPos pos) {
+		int index = moveIndex.get(pos.asLong());
+		if(index != -1) {
+			toMove.remove(index);
+			rebuildMoveIndex();
 		}
 	}
+
+	private void addToDestroy(BlockPos pos) {
+		destroySet.add(pos.asLong());
+		toDestroy.add(pos);
+	}
+
+	// Only needed when the list is reordered or shrinks, which happens at most a handful of times per resolve.
+	// putIfAbsent keeps the index pointing at the first occurrence, matching List.indexOf.
+	private void rebuildMoveIndex() {
+		moveIndex.clear();
+		for(int i = 0; i < toMove.size(); i++)
+			moveIndex.putIfAbsent(toMove.get(i).asLong(), i);
+	}
 	
 	private boolean addBlockLine(BlockPos origin, Direction face) {
 		final int max = GeneralConfig.pistonPushLimit; 
 
 		BlockPos target = origin;
-		BlockState iblockstate = world.getBlockState(target);
+		BlockState iblockstate = getState(target);
 
 		if(iblockstate.isAir() 
 				|| !PistonBaseBlock.isPushable(iblockstate, world, origin, moveDirection, false, face)
 				|| origin.equals(pistonPos)
-				|| toMove.contains(origin))
+				|| moveIndex.containsKey(origin.asLong()))
 			return true;
 
 		else {
@@ -97,7 +150,7 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 				return false;
 			else {
 				BlockPos oldPos = origin;
-				BlockState oldState = world.getBlockState(origin); 
+				BlockState oldState = iblockstate;
 				
 				boolean skippingNext = false;
 				while(true) {
@@ -113,7 +166,7 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 					}
 					
 					target = origin.relative(moveDirection.getOpposite(), lineLen);
-					iblockstate = world.getBlockState(target);
+					iblockstate = getState(target);
 					
 					if(iblockstate.isAir() || !PistonBaseBlock.isPushable(iblockstate, world, target, moveDirection, false, moveDirection.getOpposite()) || target.equals(pistonPos))
 						break;
@@ -134,10 +187,10 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 
 				for(int j = lineLen - 1; j >= 0; --j) {
 					BlockPos movePos = origin.relative(moveDirection.getOpposite(), j);
-					if(toDestroy.contains(movePos))
+					if(destroySet.contains(movePos.asLong()))
 						break;
 					
-					toMove.add(movePos);
+					addToMove(movePos);
 					i1++;
 				}
 				
@@ -148,7 +201,7 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 
 				while(true) {
 					BlockPos blockpos1 = origin.relative(moveDirection, j1);
-					int k = toMove.indexOf(blockpos1);
+					int k = moveIndex.get(blockpos1.asLong());
 					
 					MoveResult res = MoveResult.MOVE;
 
@@ -168,7 +221,7 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 					}
 					
 					if(res == MoveResult.MOVE) {
-						iblockstate = world.getBlockState(blockpos1);
+						iblockstate = getState(blockpos1);
 
 						if(iblockstate.isAir())
 							return true;
@@ -177,8 +230,8 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 							return false;
 
 						if(iblockstate.getPistonPushReaction() == PushReaction.DESTROY) {
-							toDestroy.add(blockpos1);
-							toMove.remove(blockpos1);
+							addToDestroy(blockpos1);
+							removeFromMove(blockpos1);
 							return true;
 						}
 
@@ -195,7 +248,7 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 						if(toMove.size() >= max)
 							return false;
 						
-						toMove.add(blockpos1);
+						addToMove(blockpos1);
 
 						++i1;
 						++j1;
@@ -219,11 +272,12 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 		toMove.addAll(list);
 		toMove.addAll(list1);
 		toMove.addAll(list2);
+		rebuildMoveIndex();
 	}
 
 	@SuppressWarnings("incomplete-switch")
 	private MoveResult addBranchingBlocks(Level world, BlockPos fromPos, boolean isSourceBranching) {
-		BlockState state = world.getBlockState(fromPos);
+		BlockState state = getState(fromPos);
 		Block block = state.getBlock();
 		
 		Direction opposite = moveDirection.getOpposite();
@@ -231,11 +285,11 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 		for(Direction face : Direction.values()) {
 				MoveResult res = MoveResult.MOVE;
 				BlockPos targetPos = fromPos.relative(face);
-				BlockState targetState = world.getBlockState(targetPos);
+				BlockState targetState = getState(targetPos);
 				
 				if(!isSourceBranching) {
-					IIndirectConnector indirect = getIndirectStickiness(targetState);
-					if(indirect != null && indirect.isEnabled() && indirect.canConnectIndirectly(world, targetPos, fromPos, targetState, state))
+					IIndirectConnector indirect = StickinessCache.getIndirectConnector(targetState);
+					if(indirect != null && indirect.canConnectIndirectly(world, targetPos, fromPos, targetState, state))
 						res = getStickCompatibility(world, state, targetState, fromPos, targetPos, face);
 					else res = MoveResult.SKIP;
 				} 
@@ -254,8 +308,8 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 					break;
 				case BREAK:
 					if(PistonBaseBlock.isPushable(targetState, world, targetPos, moveDirection, true, moveDirection)) {
-						toDestroy.add(targetPos);
-						toMove.remove(targetPos);
+						addToDestroy(targetPos);
+						removeFromMove(targetPos);
 						return MoveResult.BREAK;
 					}
 					
@@ -270,14 +324,14 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 	}
 
 	private boolean isBlockBranching(Level world, BlockPos pos) {
-		BlockState state = world.getBlockState(pos);
+		BlockState state = getState(pos);
 		Block block = state.getBlock();
 
-		return block instanceof ICollateralMover ? ((ICollateralMover) block).isCollateralMover(world, pistonPos, moveDirection, pos) : isBlockSticky(state);
+		return block instanceof ICollateralMover ? ((ICollateralMover) block).isCollateralMover(world, pistonPos, moveDirection, pos) : StickinessCache.isSticky(state);
 	}
 	
 	private MoveResult getBranchResult(Level world, BlockPos pos) {
-		BlockState state = world.getBlockState(pos);
+		BlockState state = getState(pos);
 		Block block = state.getBlock();
 
 		if(block instanceof ICollateralMover)
@@ -287,31 +341,16 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 	}
 	
 	private MoveResult getStickCompatibility(Level world, BlockState state1, BlockState state2, BlockPos pos1, BlockPos pos2, Direction face) {
-		IConditionalSticky stick = getStickCondition(state1);
+		IConditionalSticky stick = StickinessCache.getStickCondition(state1);
 		if(stick != null && !stick.canStickToBlock(world, pistonPos, pos1, pos2, state1, state2, moveDirection))
 			return MoveResult.SKIP;
 		
-		stick = getStickCondition(state2);
+		stick = StickinessCache.getStickCondition(state2);
 		if(stick != null && !stick.canStickToBlock(world, pistonPos, pos2, pos1, state2, state1, moveDirection))
 			return MoveResult.SKIP;
 
 		return MoveResult.MOVE;
 	}
-	
-	private IConditionalSticky getStickCondition(BlockState state) {
-		Block block = state.getBlock();
-		if(block == Blocks.HONEY_BLOCK)
-			return HoneyStickCondition.INSTANCE;
-		
-		if(block instanceof IConditionalSticky)
-			return (IConditionalSticky) block;
-		
-		IIndirectConnector indirect = getIndirectStickiness(state);
-		if(indirect != null && indirect.isEnabled())
-			return indirect.getStickyCondition();
-		
-		return null;
-	}
 
 	@Nonnull
 	@Override
@@ -330,36 +369,5 @@ public class QuarkPistonStructureResolver extends PistonStructureResolver {
 
 		return toDestroy;
 	}
-	
-	private static IIndirectConnector getIndirectStickiness(BlockState state) {
-		for(Pair<Predicate<BlockState>, IIndirectConnector> p : IIndirectConnector.INDIRECT_STICKY_BLOCKS)
-			if(p.getLeft().test(state))
-				return p.getRight();
-		
-		return null;
-	}
-	
-	private static boolean isBlockSticky(BlockState state) {
-		if(state.isStickyBlock())
-			return true;
-		
-		IIndirectConnector indirect = getIndirectStickiness(state);
-		return indirect != null && indirect.isEnabled();
-	}
-	
-	private static class HoneyStickCondition implements IConditionalSticky {
-
-		private static final HoneyStickCondition INSTANCE = new HoneyStickCondition();
-		
-		@Override
-		public boolean canStickToBlock(Level world, BlockPos pistonPos, BlockPos pos, BlockPos slimePos, BlockState state, BlockState slimeState, Direction direction) {
-			Block block = state.getBlock();
-			Block slime = slimeState.getBlock();
-			
-			// specifically utilize the vanilla sticky definition as to not break honey connections with blocks like chains
-			return !slime.isStickyBlock(slimeState) || block == slime;
-		}
-		
-	}
 
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package vazkii.quark.base.handler;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
@@ -11,8 +12,8 @@ import net.minecraft.core.Registry;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.Container;
 import net.minecraft.world.InteractionResult;
-import net.minecraft.world.entity.EquipmentSlot;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.food.FoodProperties;
 import net.minecraft.world.inventory.AbstractContainerMenu;
 import net.minecraft.world.inventory.Slot;
 import net.minecraft.world.item.ArmorItem;
@@ -30,7 +31,6 @@ import net.minecraft.world.item.PickaxeItem;
 import net.minecraft.world.item.PotionItem;
 import net.minecraft.world.item.ShovelItem;
 import net.minecraft.world.item.SwordItem;
-import net.minecraft.world.item.Tier;
 import net.minecraft.world.item.TridentItem;
 import net.minecraft.world.item.enchantment.Enchantment;
 import net.minecraft.world.item.enchantment.EnchantmentHelper;
@@ -44,6 +44,7 @@ import vazkii.quark.addons.oddities.inventory.SlotCachingItemHandler;
 import vazkii.quark.api.ICustomSorting;
 import vazkii.quark.api.QuarkCapabilities;
 import vazkii.quark.base.module.ModuleLoader;
+import vazkii.quark.base.util.ItemKey;
 import vazkii.quark.content.management.module.InventorySortingModule;
 
 public final class SortingHandler {
@@ -54,28 +55,38 @@ public final class SortingHandler {
 			(ItemStack s1, ItemStack s2) -> s2.getCount() - s1.getCount(),
 			(ItemStack s1, ItemStack s2) -> s2.hashCode() - s1.hashCode()));
 
-	private static final Comparator<ItemStack> FOOD_COMPARATOR = jointComparator(Arrays.asList(
-			SortingHandler::foodHealCompare,
-			SortingHandler::foodSaturationCompare));
+	// The comparators used for sorting work on SortKeys, which have everything they look at worked out in advance
 
-	private static final Comparator<ItemStack> TOOL_COMPARATOR = jointComparator(Arrays.asList(
-			SortingHandler::toolPowerCompare,
-			SortingHandler::enchantmentCompare,
-			SortingHandler::damageCompare));
+	private static final Comparator<SortKey> FALLBACK_KEY_COMPARATOR = (SortKey k1, SortKey k2) -> {
+		if (k1.itemId != k2.itemId)
+			return k1.itemId - k2.itemId;
+		if (k1.damage != k2.damage)
+			return k1.damage - k2.damage;
+		if (k1.count != k2.count)
+			return k2.count - k1.count;
+		return k2.hash - k1.hash;
+	};
+
+	private static final Comparator<SortKey> FOOD_COMPARATOR = keyComparator(
+			(SortKey k1, SortKey k2) -> k2.nutrition - k1.nutrition,
+			(SortKey k1, SortKey k2) -> (int) (k2.saturation * 100 - k1.saturation * 100));
 
-	private static final Comparator<ItemStack> SWORD_COMPARATOR = jointComparator(Arrays.asList(
-			SortingHandler::swordPowerCompare,
+	private static final Comparator<SortKey> TOOL_COMPARATOR = keyComparator(
+			(SortKey k1, SortKey k2) -> (int) (k2.power * 100 - k1.power * 100),
 			SortingHandler::enchantmentCompare,
-			SortingHandler::damageCompare));
+			SortingHandler::damageCompare);
 
-	private static final Comparator<ItemStack> ARMOR_COMPARATOR = jointComparator(Arrays.asList(
-			SortingHandler::armorSlotAndToughnessCompare,
+	private static final Comparator<SortKey> ARMOR_COMPARATOR = keyComparator(
+			(SortKey k1, SortKey k2) -> k2.armorSlot - k1.armorSlot,
 			SortingHandler::enchantmentCompare,
-			SortingHandler::damageCompare));
+			SortingHandler::damageCompare);
 
-	private static final Comparator<ItemStack> BOW_COMPARATOR = jointComparator(Arrays.asList(
+	private static final Comparator<SortKey> BOW_COMPARATOR = keyComparator(
 			SortingHandler::enchantmentCompare,
-			SortingHandler::damageCompare));
+			SortingHandler::damageCompare);
+
+	private static final Comparator<SortKey> LIST_ORDER_COMPARATOR = keyComparator(
+			(SortKey k1, SortKey k2) -> k1.listIndex - k2.listIndex);
 
 	public static void sortInventory(Player player, boolean forcePlayer) {
 		if (!ModuleLoader.INSTANCE.isModuleEnabled(InventorySortingModule.class))
@@ -160,67 +171,57 @@ public final class SortingHandler {
 	}
 
 	public static void mergeStacks(List<ItemStack> list) {
-		for (int i = 0; i < list.size(); i++) {
-			ItemStack set = mergeStackWithOthers(list, i);
-			list.set(i, set);
-		}
-
-		list.removeIf((ItemStack stack) -> stack.isEmpty() || stack.getCount() == 0);
-	}
-
-	private static ItemStack mergeStackWithOthers(List<ItemStack> list, int index) {
-		ItemStack stack = list.get(index);
-		if (stack.isEmpty())
-			return stack;
-
-		for (int i = 0; i < list.size(); i++) {
-			if (i == index)
-				continue;
+		// Each item has at most one stack that isn't full, and more of that item gets merged into it
+		Map<ItemKey, ItemStack> openStacks = new HashMap<>();
 
-			ItemStack stackAt = list.get(i);
-			if (stackAt.isEmpty())
+		for (ItemStack stack : list) {
+			if (stack.isEmpty())
 				continue;
 
-			if (stackAt.getCount() < stackAt.getMaxStackSize() && ItemStack.isSame(stack, stackAt) && ItemStack.tagMatches(stack, stackAt)) {
-				int setSize = stackAt.getCount() + stack.getCount();
-				int carryover = Math.max(0, setSize - stackAt.getMaxStackSize());
-				stackAt.setCount(carryover);
-				stack.setCount(setSize - carryover);
+			ItemKey key = new ItemKey(stack);
+			ItemStack open = openStacks.get(key);
+			if (open != null && ItemStack.isSame(stack, open) && ItemStack.tagMatches(stack, open)) {
+				int moved = Math.min(stack.getCount(), open.getMaxStackSize() - open.getCount());
+				open.grow(moved);
+				stack.shrink(moved);
 
-				if (stack.getCount() == stack.getMaxStackSize())
-					return stack;
+				if (open.getCount() >= open.getMaxStackSize())
+					openStacks.remove(key);
 			}
+
+			if (!stack.isEmpty() && stack.getCount() < stack.getMaxStackSize())
+				openStacks.put(key, stack);
 		}
 
-		return stack;
+		list.removeIf((ItemStack stack) -> stack.isEmpty() || stack.getCount() == 0);
 	}
 
 	public static void sortStackList(List<ItemStack> list) {
-		list.sort(SortingHandler::stackCompare);
+		List<SortKey> keys = new ArrayList<>(list.size());
+		for (ItemStack stack : list)
+			keys.add(new SortKey(stack));
+
+		keys.sort(SortingHandler::keyCompare);
+
+		for (int i = 0; i < keys.size(); i++)
+			list.set(i, keys.get(i).stack);
 	}
 
-	private static int stackCompare(ItemStack stack1, ItemStack stack2) {
-		if (stack1 == stack2)
+	private static int keyCompare(SortKey key1, SortKey key2) {
+		if (key1.stack == key2.stack)
 			return 0;
-		if (stack1.isEmpty())
+		if (key1.empty)
 			return -1;
-		if (stack2.isEmpty())
+		if (key2.empty)
 			return 1;
 
-		if(hasCustomSorting(stack1) && hasCustomSorting(stack2)) {
-			ICustomSorting sort1 = getCustomSorting(stack1);
-			ICustomSorting sort2 = getCustomSorting(stack2);
-			if (sort1.getSortingCategory().equals(sort2.getSortingCategory()))
-				return sort1.getItemComparator().compare(stack1, stack2);
-		}
-
-		ItemType type1 = getType(stack1);
-		ItemType type2 = getType(stack2);
+		if (key1.customSorting != null && key2.customSorting != null && key1.customCategory.equals(key2.customCategory))
+			return key1.customSorting.getItemComparator().compare(key1.stack, key2.stack);
 
-		if (type1 == type2)
-			return type1.comparator.compare(stack1, stack2);
+		if (key1.type == key2.type)
+			return key1.type.comparator.compare(key1, key2);
 
-		return type1.ordinal() - type2.ordinal();
+		return key1.type.ordinal() - key2.type.ordinal();
 	}
 
 	private static ItemType getType(ItemStack stack) {
@@ -279,20 +280,16 @@ public final class SortingHandler {
 		};
 	}
 
-	private static Comparator<ItemStack> listOrderComparator(List<Item> list) {
-		return (ItemStack stack1, ItemStack stack2) -> {
-			Item i1 = stack1.getItem();
-			Item i2 = stack2.getItem();
-			if (list.contains(i1)) {
-				if (list.contains(i2))
-					return list.indexOf(i1) - list.indexOf(i2);
-				return 1;
+	@SafeVarargs
+	private static Comparator<SortKey> keyComparator(Comparator<SortKey>... comparators) {
+		return (SortKey k1, SortKey k2) -> {
+			for (Comparator<SortKey> comparator : comparators) {
+				int compare = comparator.compare(k1, k2);
+				if (compare != 0)
+					return compare;
 			}
 
-			if (list.contains(i2))
-				return -1;
-
-			return 0;
+			return FALLBACK_KEY_COMPARATOR.compare(k1, k2);
 		};
 	}
 
@@ -314,16 +311,12 @@ public final class SortingHandler {
 		return itemList;
 	}
 
-	private static int foodHealCompare(ItemStack stack1, ItemStack stack2) {
-		return stack2.getItem().getFoodProperties().getNutrition() - stack1.getItem().getFoodProperties().getNutrition();
+	private static int enchantmentCompare(SortKey k1, SortKey k2) {
+		return k2.enchantPower - k1.enchantPower;
 	}
 
-	private static int foodSaturationCompare(ItemStack stack1, ItemStack stack2) {
-		return (int) (stack2.getItem().getFoodProperties().getSaturationModifier() * 100 - stack1.getItem().getFoodProperties().getSaturationModifier() * 100);
-	}
-
-	private static int enchantmentCompare(ItemStack stack1, ItemStack stack2) {
-		return enchantmentPower(stack2) - enchantmentPower(stack1);
+	private static int damageCompare(SortKey k1, SortKey k2) {
+		return k1.damage - k2.damage;
 	}
 
 	private static int enchantmentPower(ItemStack stack) {
@@ -339,31 +332,6 @@ public final class SortingHandler {
 		return total;
 	}
 
-	private static int toolPowerCompare(ItemStack stack1, ItemStack stack2) {
-		Tier mat1 = ((DiggerItem) stack1.getItem()).getTier();
-		Tier mat2 = ((DiggerItem) stack2.getItem()).getTier();
-		return (int) (mat2.getSpeed() * 100 - mat1.getSpeed() * 100);
-	}
-
-	private static int swordPowerCompare(ItemStack stack1, ItemStack stack2) {
-		Tier mat1 = ((SwordItem) stack1.getItem()).getTier();
-		Tier mat2 = ((SwordItem) stack2.getItem()).getTier();
-		return (int) (mat2.getAttackDamageBonus() * 100 - mat1.getAttackDamageBonus() * 100);
-	}
-
-	private static int armorSlotAndToughnessCompare(ItemStack stack1, ItemStack stack2) {
-		ArmorItem armor1 = (ArmorItem) stack1.getItem();
-		ArmorItem armor2 = (ArmorItem) stack2.getItem();
-
-		EquipmentSlot slot1 = armor1.getSlot();
-		EquipmentSlot slot2 = armor2.getSlot();
-
-		if (slot1 == slot2)
-			return armor2.getMaterial().getDefenseForSlot(slot2) - armor2.getMaterial().getDefenseForSlot(slot1);
-
-		return slot2.getIndex() - slot1.getIndex();
-	}
-
 	public static int damageCompare(ItemStack stack1, ItemStack stack2) {
 		return stack1.getDamageValue() - stack2.getDamageValue();
 	}
@@ -383,7 +351,7 @@ public final class SortingHandler {
 		TOOL_PICKAXE(classPredicate(PickaxeItem.class), TOOL_COMPARATOR),
 		TOOL_SHOVEL(classPredicate(ShovelItem.class), TOOL_COMPARATOR),
 		TOOL_AXE(classPredicate(AxeItem.class), TOOL_COMPARATOR),
-		TOOL_SWORD(classPredicate(SwordItem.class), SWORD_COMPARATOR),
+		TOOL_SWORD(classPredicate(SwordItem.class), TOOL_COMPARATOR),
 		TOOL_GENERIC(classPredicate(DiggerItem.class), TOOL_COMPARATOR),
 		ARMOR(classPredicate(ArmorItem.class), ARMOR_COMPARATOR),
 		BOW(classPredicate(BowItem.class), BOW_COMPARATOR),
@@ -398,19 +366,25 @@ public final class SortingHandler {
 		BLOCK(classPredicate(BlockItem.class));
 
 		private final Predicate<ItemStack> predicate;
-		private final Comparator<ItemStack> comparator;
+		private final Comparator<SortKey> comparator;
+		private final List<Item> list;
 
 		ItemType(List<Item> list) {
-			this(itemPredicate(list), jointComparator(listOrderComparator(list), new ArrayList<>()));
+			this(itemPredicate(list), LIST_ORDER_COMPARATOR, list);
 		}
 
 		ItemType(Predicate<ItemStack> predicate) {
-			this(predicate, FALLBACK_COMPARATOR);
+			this(predicate, FALLBACK_KEY_COMPARATOR, null);
+		}
+
+		ItemType(Predicate<ItemStack> predicate, Comparator<SortKey> comparator) {
+			this(predicate, comparator, null);
 		}
 
-		ItemType(Predicate<ItemStack> predicate, Comparator<ItemStack> comparator) {
+		ItemType(Predicate<ItemStack> predicate, Comparator<SortKey> comparator, List<Item> list) {
 			this.predicate = predicate;
 			this.comparator = comparator;
+			this.list = list;
 		}
 
 		public boolean fitsInType(ItemStack stack) {
@@ -419,5 +393,59 @@ public final class SortingHandler {
 
 	}
 
+	/**
+	 * Everything sorting needs to know about a stack, worked out once before sorting rather than in every comparison.
+	 */
+	private static class SortKey {
+
+		private final ItemStack stack;
+		private final boolean empty;
+		private final ICustomSorting customSorting;
+		private final String customCategory;
+		private final ItemType type;
+
+		private final int itemId;
+		private final int damage;
+		private final int count;
+		private final int hash;
+		private final int enchantPower;
+
+		private final float power;
+		private final int armorSlot;
+		private final int nutrition;
+		private final float saturation;
+		private final int listIndex;
+
+		private SortKey(ItemStack stack) {
+			this.stack = stack;
+			empty = stack.isEmpty();
+			customSorting = empty ? null : getCustomSorting(stack);
+			customCategory = customSorting == null ? null : customSorting.getSortingCategory();
+			type = getType(stack);
+
+			Item item = stack.getItem();
+			itemId = Item.getId(item);
+			damage = stack.getDamageValue();
+			count = stack.getCount();
+			hash = stack.hashCode();
+			enchantPower = enchantmentPower(stack);
+
+			if (item instanceof DiggerItem digger)
+				power = digger.getTier().getSpeed();
+			else if (item instanceof SwordItem sword)
+				power = sword.getTier().getAttackDamageBonus();
+			else power = 0;
+
+			armorSlot = item instanceof ArmorItem armor ? armor.getSlot().getIndex() : 0;
+
+			FoodProperties food = type == ItemType.FOOD ? item.getFoodProperties() : null;
+			nutrition = food == null ? 0 : food.getNutrition();
+			saturation = food == null ? 0 : food.getSaturationModifier();
+
+			listIndex = type.list == null ? -1 : type.list.indexOf(item);
+		}
+
+	}
+
 }
 
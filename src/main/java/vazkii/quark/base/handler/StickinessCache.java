@@ -0,0 +1,123 @@
+package vazkii.quark.base.handler;
+
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import vazkii.quark.api.IConditionalSticky;
+import vazkii.quark.api.IIndirectConnector;
+
+/**
+ * Resolves the sticky behaviour of every BlockState once, so the piston logic doesn't have to walk
+ * {@link IIndirectConnector#INDIRECT_STICKY_BLOCKS} for every neighbour of every moved block.
+ * Rebuilt when loading completes and whenever the config changes, since connectors can be toggled.
+ */
+public final class StickinessCache {
+
+	private static final Stickiness NONE = new Stickiness(false, null, null);
+
+	private static volatile Stickiness[] table = null;
+
+	public static void rebuild() {
+		int size = Block.BLOCK_STATE_REGISTRY.size();
+		Stickiness[] newTable = new Stickiness[size];
+
+		for(BlockState state : Block.BLOCK_STATE_REGISTRY) {
+			int id = Block.BLOCK_STATE_REGISTRY.getId(state);
+			if(id >= 0 && id < size)
+				newTable[id] = compute(state);
+		}
+
+		table = newTable;
+	}
+
+	public static Stickiness get(BlockState state) {
+		Stickiness[] currTable = table;
+		if(currTable != null) {
+			int id = Block.BLOCK_STATE_REGISTRY.getId(state);
+			if(id >= 0 && id < currTable.length && currTable[id] != null)
+				return currTable[id];
+		}
+
+		// Not built yet or a state we didn't know about, so fall back to resolving it on the spot
+		return compute(state);
+	}
+
+	public static boolean isSticky(BlockState state) {
+		return get(state).sticky;
+	}
+
+	public static IIndirectConnector getIndirectConnector(BlockState state) {
+		return get(state).indirect;
+	}
+
+	public static IConditionalSticky getStickCondition(BlockState state) {
+		return get(state).condition;
+	}
+
+	private static Stickiness compute(BlockState state) {
+		IIndirectConnector indirect = findIndirectConnector(state);
+		if(indirect != null && !indirect.isEnabled())
+			indirect = null;
+
+		boolean sticky = state.isStickyBlock() || indirect != null;
+
+		IConditionalSticky condition = null;
+		Block block = state.getBlock();
+		if(block == Blocks.HONEY_BLOCK)
+			condition = HoneyStickCondition.INSTANCE;
+		else if(block instanceof IConditionalSticky)
+			condition = (IConditionalSticky) block;
+		else if(indirect != null)
+			condition = indirect.getStickyCondition();
+
+		if(!sticky && indirect == null && condition == null)
+			return NONE;
+
+		return new Stickiness(sticky, indirect, condition);
+	}
+
+	private static IIndirectConnector findIndirectConnector(BlockState state) {
+		for(Pair<Predicate<BlockState>, IIndirectConnector> p : IIndirectConnector.INDIRECT_STICKY_BLOCKS)
+			if(p.getLeft().test(state))
+				return p.getRight();
+
+		return null;
+	}
+
+	public static class Stickiness {
+
+		public final boolean sticky;
+		public final IIndirectConnector indirect;
+		public final IConditionalSticky condition;
+
+		private Stickiness(boolean sticky, IIndirectConnector indirect, IConditionalSticky condition) {
+			this.sticky = sticky;
+			this.indirect = indirect;
+			this.condition = condition;
+		}
+
+	}
+
+	private static class HoneyStickCondition implements IConditionalSticky {
+
+		private static final HoneyStickCondition INSTANCE = new HoneyStickCondition();
+
+		@Override
+		public boolean canStickToBlock(Level world, BlockPos pistonPos, BlockPos pos, BlockPos slimePos, BlockState state, BlockState slimeState, Direction direction) {
+			Block block = state.getBlock();
+			Block slime = slimeState.getBlock();
+
+			// specifically utilize the vanilla sticky definition as to not break honey connections with blocks like chains
+			return !slime.isStickyBlock(slimeState) || block == slime;
+		}
+
+	}
+
+}
@@ -21,11 +21,12 @@ import vazkii.quark.base.network.message.SortInventoryMessage;
 import vazkii.quark.base.network.message.SpamlessChatMessage;
 import vazkii.quark.base.network.message.oddities.HandleBackpackMessage;
 import vazkii.quark.base.network.message.oddities.MatrixEnchanterOperationMessage;
+import vazkii.quark.base.network.message.oddities.PipeSyncMessage;
 import vazkii.quark.base.network.message.oddities.ScrollCrateMessage;
 
 public final class QuarkNetwork {
 
-	private static final int PROTOCOL_VERSION = 1;
+	private static final int PROTOCOL_VERSION = 2;
 	
 	private static NetworkHandler network;
 	
@@ -49,6 +50,7 @@ public final class QuarkNetwork {
 		network.register(DoEmoteMessage.class, NetworkDirection.PLAY_TO_CLIENT);
 		network.register(SpamlessChatMessage.class, NetworkDirection.PLAY_TO_CLIENT);
 		network.register(EditSignMessage.class, NetworkDirection.PLAY_TO_CLIENT);
+		network.register(PipeSyncMessage.class, NetworkDirection.PLAY_TO_CLIENT);
 	}
 	
 	public static void sendToPlayer(IMessage msg, ServerPlayer player) {
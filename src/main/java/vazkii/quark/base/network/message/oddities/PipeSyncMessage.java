@@ -0,0 +1,30 @@
+package vazkii.quark.base.network.message.oddities;
+
+import net.minecraft.core.BlockPos;
+import net.minecraftforge.network.NetworkEvent;
+import vazkii.arl.network.IMessage;
+import vazkii.quark.addons.oddities.block.be.PipeBlockEntity;
+import vazkii.quark.addons.oddities.module.PipesModule;
+
+public class PipeSyncMessage implements IMessage {
+
+	private static final long serialVersionUID = -6532170158430923754L;
+
+	public BlockPos pos;
+	public PipeBlockEntity.PipeDelta delta;
+
+	public PipeSyncMessage() { }
+
+	public PipeSyncMessage(BlockPos pos, PipeBlockEntity.PipeDelta delta) {
+		this.pos = pos;
+		this.delta = delta;
+	}
+
+	@Override
+	public boolean receive(NetworkEvent.Context context) {
+		context.enqueueWork(() -> PipesModule.applyDeltaClient(pos, delta));
+
+		return true;
+	}
+
+}
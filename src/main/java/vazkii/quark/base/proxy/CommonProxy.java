@@ -17,12 +17,14 @@ import vazkii.quark.base.handler.BrewingHandler;
 import vazkii.quark.base.handler.ContributorRewardHandler;
 import vazkii.quark.base.handler.FuelHandler;
 import vazkii.quark.base.handler.QuarkSounds;
+import vazkii.quark.base.handler.StickinessCache;
 import vazkii.quark.base.module.ModuleLoader;
 import vazkii.quark.base.module.config.IConfigCallback;
 import vazkii.quark.base.network.QuarkNetwork;
 import vazkii.quark.base.recipe.ExclusionRecipe;
 import vazkii.quark.base.world.EntitySpawnHandler;
 import vazkii.quark.base.world.WorldGenHandler;
+import vazkii.quark.base.world.generator.multichunk.MultiChunkFeatureGenerator;
 
 public class CommonProxy {
 
@@ -62,6 +64,7 @@ public class CommonProxy {
 		ModuleLoader.INSTANCE.loadComplete(event);
 		WorldGenHandler.loadComplete(event);
 		FuelHandler.addAllWoods();
+		StickinessCache.rebuild();
 	}
 	
 	public void configChanged(ModConfigEvent event) {
@@ -78,6 +81,8 @@ public class CommonProxy {
 	public void handleQuarkConfigChange() {
 		ModuleLoader.INSTANCE.configChanged();
 		EntitySpawnHandler.refresh();
+		StickinessCache.rebuild();
+		MultiChunkFeatureGenerator.invalidateSourceCaches();
 	}
 	
 	protected void initContributorRewards() {
@@ -0,0 +1,41 @@
+package vazkii.quark.base.util;
+
+import java.util.Objects;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Hash key for an item and its NBT, ignoring count, for grouping stacks that could stack together.
+ * Keeps a reference to the stack's tag rather than a copy, so it shouldn't be kept around if that tag can change.
+ */
+public final class ItemKey {
+
+	private final Item item;
+	private final CompoundTag tag;
+	private final int hash;
+
+	public ItemKey(ItemStack stack) {
+		item = stack.getItem();
+		tag = stack.getTag();
+		hash = item.hashCode() * 31 + Objects.hashCode(tag);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(obj == this)
+			return true;
+		if(!(obj instanceof ItemKey))
+			return false;
+
+		ItemKey other = (ItemKey) obj;
+		return item == other.item && hash == other.hash && Objects.equals(tag, other.tag);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+}
@@ -6,10 +6,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -32,6 +28,7 @@ import net.minecraft.world.level.levelgen.feature.configurations.NoneFeatureConf
 import net.minecraft.world.level.levelgen.placement.PlacedFeature;
 import net.minecraft.world.level.levelgen.placement.PlacementModifierType;
 import net.minecraftforge.common.world.BiomeGenerationSettingsBuilder;
+import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.minecraftforge.event.world.BiomeLoadingEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
@@ -127,23 +124,18 @@ public class WorldGenHandler {
 				if(wgen.module.enabled && gen.canGenerate(region)) {
 					if(GeneralConfig.enableWorldgenWatchdog) {
 						final int finalStageNum = stageNum;
-						stageNum = watchdogRun(gen, () -> gen.generate(finalStageNum, seed, stage, region, generator, random, pos), 1, TimeUnit.MINUTES);
+						String name = wgen.module.lowercaseName + "/" + gen.getClass().getSimpleName();
+						stageNum = WorldGenWatchdog.run(name, () -> gen.generate(finalStageNum, seed, stage, region, generator, random, pos), 1, TimeUnit.MINUTES);
 					} else stageNum = gen.generate(stageNum, seed, stage, region, generator, random, pos);
 				}
 			}
 		}
 	}
 
-	private static int watchdogRun(IGenerator gen, Callable<Integer> run, int time, TimeUnit unit) {
-		ExecutorService exec = Executors.newSingleThreadExecutor();
-		Future<Integer> future = exec.submit(run);
-		exec.shutdown();
-
-		try {
-			return future.get(time, unit);
-		} catch(Exception e) {
-			throw new RuntimeException("Error generating " + gen, e);
-		} 
+	@SubscribeEvent
+	public static void onServerStopping(ServerStoppingEvent event) {
+		if(GeneralConfig.enableWorldgenWatchdog)
+			WorldGenWatchdog.logReport();
 	}
 
 }
@@ -0,0 +1,122 @@
+package vazkii.quark.base.world;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import vazkii.quark.base.Quark;
+
+/**
+ * Runs worldgen generators on a shared, bounded pool so they can be timed out, and keeps
+ * per-generator timings so slow generators can be found. Only used with the worldgen watchdog enabled.
+ */
+public final class WorldGenWatchdog {
+
+	private static final long SLOW_RUN_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private static final Map<String, GeneratorStats> stats = new ConcurrentHashMap<>();
+
+	private static ThreadPoolExecutor executor;
+
+	public static int run(String name, Callable<Integer> run, long time, TimeUnit unit) {
+		Future<Integer> future = getExecutor().submit(() -> {
+			long start = System.nanoTime();
+			try {
+				return run.call();
+			} finally {
+				record(name, System.nanoTime() - start);
+			}
+		});
+
+		try {
+			return future.get(time, unit);
+		} catch(TimeoutException e) {
+			future.cancel(true);
+			throw new RuntimeException("Generator " + name + " took longer than " + time + " " + unit.name().toLowerCase(Locale.ROOT) + " to run", e);
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Error generating " + name, e.getCause());
+		} catch(InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while generating " + name, e);
+		}
+	}
+
+	public static void logReport() {
+		if(stats.isEmpty())
+			return;
+
+		List<Map.Entry<String, GeneratorStats>> entries = new ArrayList<>(stats.entrySet());
+		entries.sort(Comparator.comparingLong((Map.Entry<String, GeneratorStats> e) -> e.getValue().totalNanos.sum()).reversed());
+
+		Quark.LOG.info("Worldgen watchdog report ({} generators):", entries.size());
+		for(Map.Entry<String, GeneratorStats> entry : entries) {
+			GeneratorStats stat = entry.getValue();
+			long calls = stat.calls.sum();
+			long total = stat.totalNanos.sum();
+
+			Quark.LOG.info("  {}: {} runs, {} ms total, {} ms avg, {} ms max", entry.getKey(), calls,
+					TimeUnit.NANOSECONDS.toMillis(total),
+					calls == 0 ? 0 : String.format("%.3f", total / (double) calls / 1_000_000D),
+					TimeUnit.NANOSECONDS.toMillis(stat.maxNanos.get()));
+		}
+
+		stats.clear();
+	}
+
+	private static void record(String name, long nanos) {
+		GeneratorStats stat = stats.computeIfAbsent(name, n -> new GeneratorStats());
+		stat.calls.increment();
+		stat.totalNanos.add(nanos);
+		stat.maxNanos.accumulateAndGet(nanos, Math::max);
+
+		if(nanos > SLOW_RUN_NANOS)
+			Quark.LOG.warn("Generator {} took {} ms to run", name, TimeUnit.NANOSECONDS.toMillis(nanos));
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor() {
+		if(executor == null) {
+			executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new WatchdogThreadFactory());
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		return executor;
+	}
+
+	private static class GeneratorStats {
+
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+	}
+
+	private static class WatchdogThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Quark Worldgen Watchdog #" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
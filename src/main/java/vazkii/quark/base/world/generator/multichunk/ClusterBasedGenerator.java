@@ -2,9 +2,11 @@ package vazkii.quark.base.world.generator.multichunk;
 
 import java.util.Random;
 import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.WorldGenRegion;
+import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.chunk.ChunkGenerator;
 import vazkii.quark.base.module.config.type.ClusterSizeConfig;
 import vazkii.quark.base.module.config.type.DimensionConfig;
@@ -33,7 +35,7 @@ public abstract class ClusterBasedGenerator extends MultiChunkFeatureGenerator {
 		final ClusterShape shape = shapeProvider.around(src);
 		final IGenerationContext context = createContext(src, generator, random, chunkCorner, world);
 		
-		forEachChunkBlock(world, chunkCorner, shape.getLowerBound(), shape.getUpperBound(), (pos) -> {
+		forEachClusterBlock(world, chunkCorner, shape, (pos) -> {
 			double noise = shape.noiseDiff(pos);
 			if(noise > 0)
 				context.consume(pos, noise);
@@ -43,6 +45,34 @@ public abstract class ClusterBasedGenerator extends MultiChunkFeatureGenerator {
 			((IFinishableContext) context).finish();
 	}
 	
+	// Same visiting order as forEachChunkBlock, but clipped to the part of the chunk the cluster's
+	// ellipsoid can actually reach, so rows that are fully outside it are never walked
+	public void forEachClusterBlock(LevelReader level, BlockPos chunkCorner, ClusterShape shape, Consumer<BlockPos> func) {
+		int minY = Math.max(level.getMinBuildHeight() + 1, shape.getLowerBound());
+		int maxY = Math.min(level.getMaxBuildHeight() - 1, shape.getUpperBound());
+		
+		int cornerX = chunkCorner.getX();
+		int cornerZ = chunkCorner.getZ();
+		int minX = Math.max(cornerX, shape.getMinX());
+		int maxX = Math.min(cornerX + 15, shape.getMaxX());
+		int srcZ = shape.getSourceZ();
+		
+		BlockPos.MutableBlockPos mutable = new BlockPos.MutableBlockPos(0, 0, 0);
+		for(int x = minX; x <= maxX; x++)
+			for(int y = minY; y < maxY; y++) {
+				double halfWidth = shape.getRowHalfWidth(x, y);
+				if(halfWidth < 0)
+					continue;
+				
+				int minZ = Math.max(cornerZ, (int) Math.floor(srcZ - halfWidth));
+				int maxZ = Math.min(cornerZ + 15, (int) Math.ceil(srcZ + halfWidth));
+				for(int z = minZ; z <= maxZ; z++) {
+					mutable.set(x, y, z);
+					func.accept(mutable);
+				}
+			}
+	}
+	
 	public abstract IGenerationContext createContext(BlockPos src, ChunkGenerator generator, Random random, BlockPos chunkCorner, WorldGenRegion world);
 	
 	public static abstract interface IGenerationContext {
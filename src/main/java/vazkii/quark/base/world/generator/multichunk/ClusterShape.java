@@ -66,6 +66,32 @@ public class ClusterShape {
 		return maxR - r;
 	}
 
+	// Half the width of the ellipsoid along z for the row at this x/y, or -1 if the row misses it entirely.
+	// Anything further than this from the source's z is guaranteed to get -1 from noiseDiff.
+	public double getRowHalfWidth(int x, int y) {
+		double dx = (double) (x - src.getX()) / radius.x;
+		double dy = (double) (y - src.getY()) / radius.y;
+		
+		// small slack so rounding can never clip a block that noiseDiff would have accepted
+		double rem = 1 + 1e-9 - dx * dx - dy * dy;
+		if(rem < 0)
+			return -1;
+		
+		return Math.sqrt(rem) * radius.z;
+	}
+
+	public int getMinX() {
+		return (int) Math.floor(src.getX() - radius.x());
+	}
+	
+	public int getMaxX() {
+		return (int) Math.ceil(src.getX() + radius.x());
+	}
+	
+	public int getSourceZ() {
+		return src.getZ();
+	}
+	
 	public int getUpperBound() {
 		return (int) Math.ceil(src.getY() + radius.y());
 	}
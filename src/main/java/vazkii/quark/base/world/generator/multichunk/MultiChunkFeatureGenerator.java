@@ -1,11 +1,20 @@
 package vazkii.quark.base.world.generator.multichunk;
 
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.WorldGenRegion;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.chunk.ChunkGenerator;
 import vazkii.quark.base.module.config.type.DimensionConfig;
@@ -13,8 +22,19 @@ import vazkii.quark.base.world.generator.Generator;
 
 public abstract class MultiChunkFeatureGenerator extends Generator {
 
+	private static final int SOURCE_CACHE_SIZE = 4096;
+	private static final BlockPos[] NO_SOURCES = new BlockPos[0];
+	
+	// Bumped on config changes, as those can change rarity and biome settings for sources
+	private static volatile int cacheEpoch = 0;
+	
 	private final long seedXor;
 	
+	// Every chunk is looked at by all chunks within chunkRadius of it, so remember its valid sources
+	private final Cache<SourceKey, BlockPos[]> sourceCache = CacheBuilder.newBuilder()
+			.maximumSize(SOURCE_CACHE_SIZE)
+			.build();
+	
 	public MultiChunkFeatureGenerator(DimensionConfig dimConfig, BooleanSupplier condition, long seedXor) {
 		super(dimConfig, condition);
 		this.seedXor = seedXor;
@@ -39,17 +59,43 @@ public abstract class MultiChunkFeatureGenerator extends Generator {
 		long chunkSeed = (xSeed * chunkX + zSeed * chunkZ) ^ worldSeed ^ seedXor;
 		Random ourRandom = new Random(chunkSeed);
 		
+		ResourceKey<Level> dimension = world.getLevel().dimension();
+		int epoch = cacheEpoch;
+		
 		for(int x = chunkX - chunkRadius; x <= chunkX + chunkRadius; x++)
 			for(int z = chunkZ - chunkRadius; z <= chunkZ + chunkRadius; z++) {
-				chunkSeed = (xSeed * x + zSeed * z) ^ worldSeed ^ seedXor;
+				BlockPos[] sources = getValidSources(world, generator, x, z, xSeed, zSeed, dimension, epoch);
+				for(BlockPos source : sources)
+					generateChunkPart(source, generator, ourRandom, pos, world);
+			}
+	}
+	
+	private BlockPos[] getValidSources(WorldGenRegion world, ChunkGenerator generator, int x, int z, long xSeed, long zSeed, ResourceKey<Level> dimension, int epoch) {
+		SourceKey key = new SourceKey(ChunkPos.asLong(x, z), world.getSeed(), dimension, epoch);
+		
+		try {
+			return sourceCache.get(key, () -> {
+				long worldSeed = world.getSeed();
+				long chunkSeed = (xSeed * x + zSeed * z) ^ worldSeed ^ seedXor;
 				Random chunkRandom = new Random(chunkSeed);
 				BlockPos chunkCorner = new BlockPos(x << 4, 0, z << 4);
 
 				BlockPos[] sources = getSourcesInChunk(world, chunkRandom, generator, chunkCorner);
-				for(BlockPos source : sources)
-					if(source != null && isSourceValid(world, generator, source))
-						generateChunkPart(source, generator, ourRandom, pos, world);
-			}
+				if(sources.length == 0)
+					return NO_SOURCES;
+				
+				BlockPos[] valid = Arrays.stream(sources)
+						.filter(source -> source != null && isSourceValid(world, generator, source))
+						.toArray(BlockPos[]::new);
+				return valid.length == 0 ? NO_SOURCES : valid;
+			});
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Failed to find sources for " + this + " in chunk " + x + ", " + z, e.getCause());
+		}
+	}
+	
+	public static void invalidateSourceCaches() {
+		cacheEpoch++;
 	}
 	
 	public boolean isSourceValid(WorldGenRegion world, ChunkGenerator generator, BlockPos pos) {
@@ -81,4 +127,36 @@ public abstract class MultiChunkFeatureGenerator extends Generator {
 		return pos.getX() > x && pos.getZ() > z && pos.getX() < (x + 16) && pos.getZ() < (z + 16); 
 	}
 	
+	private static class SourceKey {
+		
+		private final long chunkPos;
+		private final long worldSeed;
+		private final ResourceKey<Level> dimension;
+		private final int epoch;
+		
+		public SourceKey(long chunkPos, long worldSeed, ResourceKey<Level> dimension, int epoch) {
+			this.chunkPos = chunkPos;
+			this.worldSeed = worldSeed;
+			this.dimension = dimension;
+			this.epoch = epoch;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(obj == this)
+				return true;
+			if(!(obj instanceof SourceKey))
+				return false;
+			
+			SourceKey other = (SourceKey) obj;
+			return chunkPos == other.chunkPos && worldSeed == other.worldSeed && epoch == other.epoch && dimension == other.dimension;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(chunkPos, worldSeed, dimension, epoch);
+		}
+		
+	}
+	
 }
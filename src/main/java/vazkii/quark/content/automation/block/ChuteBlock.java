@@ -10,6 +10,8 @@ import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.EntityBlock;
 import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityTicker;
+import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.StateDefinition;
 import net.minecraft.world.level.block.state.properties.BlockStateProperties;
@@ -23,6 +25,7 @@ import vazkii.quark.base.handler.RenderLayerHandler;
 import vazkii.quark.base.handler.RenderLayerHandler.RenderTypeSkeleton;
 import vazkii.quark.base.module.QuarkModule;
 import vazkii.quark.content.automation.block.be.ChuteBlockEntity;
+import vazkii.quark.content.automation.module.ChuteModule;
 
 public class ChuteBlock extends QuarkBlock implements EntityBlock {
 
@@ -64,6 +67,15 @@ public class ChuteBlock extends QuarkBlock implements EntityBlock {
 		return DOWN_SHAPE;
 	}
 
+	@Override
+	public void onRemove(BlockState state, Level worldIn, BlockPos pos, BlockState newState, boolean isMoving) {
+		// Don't lose anything that went in this tick but hasn't been dropped yet
+		if(!state.is(newState.getBlock()) && worldIn.getBlockEntity(pos) instanceof ChuteBlockEntity chute)
+			chute.dropBuffer();
+
+		super.onRemove(state, worldIn, pos, newState, isMoving);
+	}
+
 	@Override
 	protected void createBlockStateDefinition(StateDefinition.Builder<Block, BlockState> builder) {
 		builder.add(ENABLED);
@@ -79,4 +91,9 @@ public class ChuteBlock extends QuarkBlock implements EntityBlock {
 		return new ChuteBlockEntity(p_153215_, p_153216_);
 	}
 
+	@Override
+	public <T extends BlockEntity> BlockEntityTicker<T> getTicker(Level world, BlockState state, BlockEntityType<T> type) {
+		return world.isClientSide ? null : createTickerHelper(type, ChuteModule.blockEntityType, ChuteBlockEntity::tick);
+	}
+
 }
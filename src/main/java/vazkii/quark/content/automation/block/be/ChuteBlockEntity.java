@@ -1,17 +1,26 @@
 package vazkii.quark.content.automation.block.be;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
 import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.AABB;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.items.CapabilityItemHandler;
 import net.minecraftforge.items.IItemHandler;
+import net.minecraftforge.items.ItemHandlerHelper;
 import vazkii.arl.block.be.ARLBlockEntity;
 import vazkii.quark.content.automation.block.ChuteBlock;
 import vazkii.quark.content.automation.module.ChuteModule;
@@ -22,11 +31,112 @@ import vazkii.quark.content.building.module.GrateModule;
  * Created at 10:18 AM on 9/29/19.
  */
 public class ChuteBlockEntity extends ARLBlockEntity {
+
+    private static final String TAG_BUFFER = "buffer";
+
+    // Everything inserted this tick, merged into as few stacks as possible, to be dropped when the chute ticks
+    private final List<ItemStack> outputBuffer = new ArrayList<>();
+    // Item entities this chute dropped that are still below it; the only ones it tops up, so it never touches anyone else's items
+    private final List<ItemEntity> droppedEntities = new ArrayList<>();
 	
     public ChuteBlockEntity(BlockPos pos, BlockState state) {
         super(ChuteModule.blockEntityType, pos, state);
     }
 
+    public static void tick(Level level, BlockPos pos, BlockState state, ChuteBlockEntity be) {
+        // If the chute got disabled or blocked since the items went in, they wait until it can drop them again
+        if (!be.outputBuffer.isEmpty() && be.canDropItem())
+            be.dropBuffer();
+        else if (!be.droppedEntities.isEmpty()) {
+            AABB below = new AABB(pos.below());
+            be.droppedEntities.removeIf(entity -> !canMergeInto(entity, below));
+        }
+    }
+
+    private void addToBuffer(ItemStack stack) {
+        if (outputBuffer.isEmpty())
+            setChanged();
+
+        for (ItemStack buffered : outputBuffer) {
+            if (ItemHandlerHelper.canItemStacksStack(buffered, stack)) {
+                int moved = Math.min(stack.getCount(), buffered.getMaxStackSize() - buffered.getCount());
+                if (moved > 0) {
+                    buffered.grow(moved);
+                    stack.shrink(moved);
+                    if (stack.isEmpty())
+                        return;
+                }
+            }
+        }
+
+        outputBuffer.add(stack);
+    }
+
+    public void dropBuffer() {
+        if (level == null || level.isClientSide)
+            return;
+
+        AABB below = new AABB(worldPosition.below());
+        droppedEntities.removeIf(entity -> !canMergeInto(entity, below));
+
+        for (ItemStack stack : outputBuffer) {
+            // Top up items this chute already dropped that are still sitting or falling below it before making new ones
+            for (ItemEntity entity : droppedEntities) {
+                ItemStack entityStack = entity.getItem();
+                if (ItemHandlerHelper.canItemStacksStack(entityStack, stack) && entityStack.getCount() < entityStack.getMaxStackSize()) {
+                    int moved = Math.min(stack.getCount(), entityStack.getMaxStackSize() - entityStack.getCount());
+                    ItemStack merged = entityStack.copy();
+                    merged.grow(moved);
+                    entity.setItem(merged);
+
+                    stack.shrink(moved);
+                    if (stack.isEmpty())
+                        break;
+                }
+            }
+
+            if (!stack.isEmpty()) {
+                ItemEntity entity = new ItemEntity(level, worldPosition.getX() + 0.5, worldPosition.getY() - 0.5, worldPosition.getZ() + 0.5, stack);
+                entity.setDeltaMovement(0, 0, 0);
+                if (level.addFreshEntity(entity))
+                    droppedEntities.add(entity);
+            }
+        }
+
+        outputBuffer.clear();
+        setChanged();
+    }
+
+    private static boolean canMergeInto(ItemEntity entity, AABB below) {
+        // Same age cutoff vanilla uses for merging item entities, so topped up items don't despawn right away
+        return entity.isAlive() && entity.getAge() < 6000 && entity.getBoundingBox().intersects(below);
+    }
+
+    @Override
+    public void load(CompoundTag nbt) {
+        super.load(nbt);
+
+        outputBuffer.clear();
+        ListTag buffer = nbt.getList(TAG_BUFFER, Tag.TAG_COMPOUND);
+        for (int i = 0; i < buffer.size(); i++) {
+            ItemStack stack = ItemStack.of(buffer.getCompound(i));
+            if (!stack.isEmpty())
+                outputBuffer.add(stack);
+        }
+    }
+
+    @Override
+    protected void saveAdditional(CompoundTag nbt) {
+        super.saveAdditional(nbt);
+
+        if (!outputBuffer.isEmpty()) {
+            ListTag buffer = new ListTag();
+            for (ItemStack stack : outputBuffer)
+                buffer.add(stack.save(new CompoundTag()));
+            nbt.put(TAG_BUFFER, buffer);
+        }
+    }
+
     private boolean canDropItem() {
         if(level != null && level.getBlockState(worldPosition).getValue(ChuteBlock.ENABLED)) {
             BlockPos below = worldPosition.below();
@@ -55,11 +165,8 @@ public class ChuteBlockEntity extends ARLBlockEntity {
             if (!canDropItem())
                 return stack;
 
-            if(!simulate && level != null && !stack.isEmpty()) {
-                ItemEntity entity = new ItemEntity(level, worldPosition.getX() + 0.5, worldPosition.getY() - 0.5, worldPosition.getZ() + 0.5, stack.copy());
-                entity.setDeltaMovement(0, 0, 0);
-                level.addFreshEntity(entity);
-            }
+            if(!simulate && level != null && !stack.isEmpty())
+                addToBuffer(stack.copy());
 
             return ItemStack.EMPTY;
         }
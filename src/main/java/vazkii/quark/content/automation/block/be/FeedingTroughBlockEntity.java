@@ -88,6 +88,18 @@ public class FeedingTroughBlockEntity extends RandomizableContainerBlockEntity {
         return null;
     }
 
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        FeedingTroughModule.addTrough(this);
+    }
+
+    @Override
+    public void setRemoved() {
+        super.setRemoved();
+        FeedingTroughModule.removeTrough(this);
+    }
+
     public static void tick(Level level, BlockPos pos, BlockState state, FeedingTroughBlockEntity be) {
         if (level != null && !level.isClientSide) {
             if (be.cooldown > 0)
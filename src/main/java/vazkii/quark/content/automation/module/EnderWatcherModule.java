@@ -1,8 +1,25 @@
 package vazkii.quark.content.automation.module;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.entity.EquipmentSlot;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.ClipContext;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraft.world.phys.BlockHitResult;
+import net.minecraft.world.phys.HitResult;
 import vazkii.arl.util.RegistryHelper;
+import vazkii.quark.base.handler.RayTraceHandler;
 import vazkii.quark.base.module.LoadModule;
 import vazkii.quark.base.module.ModuleCategory;
 import vazkii.quark.base.module.QuarkModule;
@@ -14,11 +31,55 @@ public class EnderWatcherModule extends QuarkModule {
 
 	public static BlockEntityType<EnderWatcherBlockEntity> blockEntityType;
 
+	private static final WeakHashMap<Level, Gazes> gazes = new WeakHashMap<>();
+
 	@Override
 	public void construct() {
 		Block ender_watcher = new EnderWatcherBlock(this);
 		blockEntityType = BlockEntityType.Builder.of(EnderWatcherBlockEntity::new, ender_watcher).build(null);
 		RegistryHelper.register(blockEntityType, "ender_watcher");
 	}
-	
+
+	/**
+	 * Gets the hits of every player looking at the given block this tick. Each player is only
+	 * ray traced once per tick, no matter how many watchers ask.
+	 */
+	public static List<BlockHitResult> getGazesAt(Level level, BlockPos pos) {
+		Gazes levelGazes;
+		synchronized(gazes) {
+			levelGazes = gazes.computeIfAbsent(level, l -> new Gazes());
+		}
+
+		long time = level.getGameTime();
+		if(levelGazes.time != time) {
+			levelGazes.time = time;
+			levelGazes.resolve(level);
+		}
+
+		return levelGazes.hits.getOrDefault(pos, Collections.emptyList());
+	}
+
+	private static class Gazes {
+
+		private long time = Long.MIN_VALUE;
+		private final Map<BlockPos, List<BlockHitResult>> hits = new HashMap<>();
+
+		private void resolve(Level level) {
+			hits.clear();
+
+			for(Player player : level.players()) {
+				ItemStack helm = player.getItemBySlot(EquipmentSlot.HEAD);
+				if(!helm.isEmpty() && helm.getItem() == Items.PUMPKIN)
+					continue;
+
+				HitResult result = RayTraceHandler.rayTrace(player, level, player, ClipContext.Block.OUTLINE, ClipContext.Fluid.NONE, 64);
+				if(result instanceof BlockHitResult && result.getType() == HitResult.Type.BLOCK) {
+					BlockHitResult blockResult = (BlockHitResult) result;
+					hits.computeIfAbsent(blockResult.getBlockPos(), p -> new ArrayList<>(1)).add(blockResult);
+				}
+			}
+		}
+
+	}
+
 }
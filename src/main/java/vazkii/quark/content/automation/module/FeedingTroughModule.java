@@ -1,23 +1,25 @@
 package vazkii.quark.content.automation.module;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
+import java.util.WeakHashMap;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.core.BlockPos;
+import net.minecraft.util.Mth;
 import net.minecraft.world.entity.ExperienceOrb;
 import net.minecraft.world.entity.ai.goal.TemptGoal;
 import net.minecraft.world.entity.animal.Animal;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.CreativeModeTab;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.ClipContext;
 import net.minecraft.world.level.GameRules;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.SoundType;
-import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.entity.BlockEntityType;
-import net.minecraft.world.level.block.entity.TickingBlockEntity;
 import net.minecraft.world.level.material.Material;
 import net.minecraft.world.phys.BlockHitResult;
 import net.minecraft.world.phys.HitResult;
@@ -60,26 +62,43 @@ public class FeedingTroughModule extends QuarkModule {
     
     @Config public static double range = 10;
 
-    private static final ThreadLocal<Set<FeedingTroughBlockEntity>> loadedTroughs = ThreadLocal.withInitial(HashSet::new);
+    // Loaded troughs per level, bucketed by chunk so tempt checks only look at chunks in range
+    private static final WeakHashMap<Level, Long2ObjectMap<Set<FeedingTroughBlockEntity>>> loadedTroughs = new WeakHashMap<>();
 
-    @SubscribeEvent
-    public void buildTroughSet(TickEvent.WorldTickEvent event) {
-        Set<FeedingTroughBlockEntity> troughs = loadedTroughs.get();
-        if (event.side == LogicalSide.SERVER) {
-            if (event.phase == TickEvent.Phase.START) {
-                breedingOccurred.remove();
-                List<TickingBlockEntity> tickers = new ArrayList<>(event.world.blockEntityTickers);
-                for (TickingBlockEntity ticking : tickers) { 
-                	BlockEntity tile = event.world.getBlockEntity(ticking.getPos());
-                    if (tile instanceof FeedingTroughBlockEntity)
-                        troughs.add((FeedingTroughBlockEntity) tile);
-                }
-            } else {
-                troughs.clear();
-            }
+    public static void addTrough(FeedingTroughBlockEntity tile) {
+        Level level = tile.getLevel();
+        if (level == null || level.isClientSide)
+            return;
+
+        loadedTroughs.computeIfAbsent(level, l -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(ChunkPos.asLong(tile.getBlockPos()), l -> new HashSet<>())
+                .add(tile);
+    }
+
+    public static void removeTrough(FeedingTroughBlockEntity tile) {
+        Level level = tile.getLevel();
+        if (level == null || level.isClientSide)
+            return;
+
+        Long2ObjectMap<Set<FeedingTroughBlockEntity>> chunks = loadedTroughs.get(level);
+        if (chunks == null)
+            return;
+
+        long chunk = ChunkPos.asLong(tile.getBlockPos());
+        Set<FeedingTroughBlockEntity> troughs = chunks.get(chunk);
+        if (troughs != null) {
+            troughs.remove(tile);
+            if (troughs.isEmpty())
+                chunks.remove(chunk);
         }
     }
 
+    @SubscribeEvent
+    public void onWorldTick(TickEvent.WorldTickEvent event) {
+        if (event.side == LogicalSide.SERVER && event.phase == TickEvent.Phase.START)
+            breedingOccurred.remove();
+    }
+
     private static final ThreadLocal<Boolean> breedingOccurred = ThreadLocal.withInitial(() -> false);
 
     @SubscribeEvent(priority = EventPriority.LOWEST)
@@ -110,19 +129,38 @@ public class FeedingTroughModule extends QuarkModule {
         BlockPos location = null;
         FakePlayer target = null;
 
-        Set<FeedingTroughBlockEntity> troughs = loadedTroughs.get();
-        for (FeedingTroughBlockEntity tile : troughs) {
-            BlockPos pos = tile.getBlockPos();
-            double distanceSq = pos.distSqr(goal.mob.position(), true);
-            if (distanceSq <= range * range && distanceSq < shortestDistanceSq) {
-                FakePlayer foodHolder = tile.getFoodHolder(goal);
-                if (foodHolder != null) {
-                    shortestDistanceSq = distanceSq;
-                    target = foodHolder;
-                    location = pos.immutable();
+        Long2ObjectMap<Set<FeedingTroughBlockEntity>> chunks = loadedTroughs.get(goal.mob.level);
+        if (chunks == null || chunks.isEmpty())
+            return found;
+
+        Vec3 mobPos = goal.mob.position();
+        int minChunkX = Mth.floor(mobPos.x - range - 1) >> 4;
+        int maxChunkX = Mth.floor(mobPos.x + range + 1) >> 4;
+        int minChunkZ = Mth.floor(mobPos.z - range - 1) >> 4;
+        int maxChunkZ = Mth.floor(mobPos.z + range + 1) >> 4;
+
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++)
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                Set<FeedingTroughBlockEntity> troughs = chunks.get(ChunkPos.asLong(chunkX, chunkZ));
+                if (troughs == null)
+                    continue;
+
+                for (FeedingTroughBlockEntity tile : troughs) {
+                    if (tile.isRemoved())
+                        continue;
+
+                    BlockPos pos = tile.getBlockPos();
+                    double distanceSq = pos.distSqr(mobPos, true);
+                    if (distanceSq <= range * range && distanceSq < shortestDistanceSq) {
+                        FakePlayer foodHolder = tile.getFoodHolder(goal);
+                        if (foodHolder != null) {
+                            shortestDistanceSq = distanceSq;
+                            target = foodHolder;
+                            location = pos.immutable();
+                        }
+                    }
                 }
             }
-        }
 
         if (target != null) {
         	Vec3 eyesPos = goal.mob.position().add(0, goal.mob.getEyeHeight(), 0);
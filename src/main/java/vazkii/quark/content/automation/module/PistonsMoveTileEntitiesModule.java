@@ -40,7 +40,7 @@ import vazkii.quark.base.module.config.Config;
 @LoadModule(category = ModuleCategory.AUTOMATION, hasSubscriptions = true)
 public class PistonsMoveTileEntitiesModule extends QuarkModule {
 
-	private static final WeakHashMap<Level, Map<BlockPos, CompoundTag>> movements = new WeakHashMap<>();
+	private static final WeakHashMap<Level, Map<BlockPos, Movement>> movements = new WeakHashMap<>();
 	private static final WeakHashMap<Level, List<Pair<BlockPos, CompoundTag>>> delayedUpdates = new WeakHashMap<>();
 
 	@Config
@@ -194,30 +194,38 @@ public class PistonsMoveTileEntitiesModule extends QuarkModule {
 		if (!movements.containsKey(world))
 			movements.put(world, new HashMap<>());
 
-		movements.get(world).put(pos, tile.saveWithFullMetadata());
+		movements.get(world).put(pos, new Movement(tile.saveWithFullMetadata()));
 	}
 
+	/**
+	 * Gets the block entity moving into the given position, for reading only. It's decoded once and shared by
+	 * every call for the whole movement, so it must not be placed in the world.
+	 */
 	public static BlockEntity getMovement(Level world, BlockPos pos) {
-		return getMovement(world, pos, false);
+		Movement movement = getMovementData(world, pos, false);
+		if (movement == null)
+			return null;
+
+		if (!movement.decoded) {
+			movement.preview = BlockEntity.loadStatic(pos, world.getBlockState(pos), movement.tag);
+			movement.decoded = true;
+		}
+
+		return movement.preview;
 	}
 
-	private static BlockEntity getMovement(Level world, BlockPos pos, boolean remove) {
+	private static Movement getMovementData(Level world, BlockPos pos, boolean remove) {
 		if (!movements.containsKey(world))
 			return null;
 
-		Map<BlockPos, CompoundTag> worldMovements = movements.get(world);
-		if (!worldMovements.containsKey(pos))
-			return null;
-
-		CompoundTag ret = worldMovements.get(pos);
-		if (remove)
-			worldMovements.remove(pos);
-
-		return BlockEntity.loadStatic(pos, world.getBlockState(pos), ret);
+		Map<BlockPos, Movement> worldMovements = movements.get(world);
+		return remove ? worldMovements.remove(pos) : worldMovements.get(pos);
 	}
 
 	private static BlockEntity getAndClearMovement(Level world, BlockPos pos) {
-		BlockEntity tile = getMovement(world, pos, true);
+		// The block entity that gets placed is always decoded fresh, the shared one has been handed out to renderers
+		Movement movement = getMovementData(world, pos, true);
+		BlockEntity tile = movement == null ? null : BlockEntity.loadStatic(pos, world.getBlockState(pos), movement.tag);
 
 		if (tile != null) {
 			if (hasCallback(tile))
@@ -277,4 +285,16 @@ public class PistonsMoveTileEntitiesModule extends QuarkModule {
 		
 	}
 
+	private static class Movement {
+
+		private final CompoundTag tag;
+		private BlockEntity preview;
+		private boolean decoded = false;
+
+		private Movement(CompoundTag tag) {
+			this.tag = tag;
+		}
+
+	}
+
 }
@@ -1,12 +1,8 @@
 package vazkii.quark.content.building.entity;
 
-import java.util.UUID;
-
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import com.mojang.authlib.GameProfile;
-
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
@@ -31,15 +27,12 @@ import net.minecraft.world.item.MapItem;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.saveddata.maps.MapItemSavedData;
 import net.minecraft.world.phys.BlockHitResult;
 import net.minecraft.world.phys.HitResult;
 import net.minecraft.world.phys.Vec3;
-import net.minecraftforge.common.util.FakePlayer;
 import net.minecraftforge.entity.IEntityAdditionalSpawnData;
 import net.minecraftforge.items.CapabilityItemHandler;
 import net.minecraftforge.network.NetworkHooks;
-import vazkii.quark.base.util.MovableFakePlayer;
 import vazkii.quark.content.building.module.GlassItemFrameModule;
 
 public class GlassItemFrame extends ItemFrame implements IEntityAdditionalSpawnData {
@@ -49,7 +42,6 @@ public class GlassItemFrame extends ItemFrame implements IEntityAdditionalSpawnD
 	private static final String TAG_SHINY = "isShiny";
 	
 	private boolean didHackery = false;
-	private FakePlayer fakePlayer = null;
 
 	public GlassItemFrame(EntityType<? extends GlassItemFrame> type, Level worldIn) {
 		super(type, worldIn);
@@ -84,27 +76,9 @@ public class GlassItemFrame extends ItemFrame implements IEntityAdditionalSpawnD
 	public void tick() {
 		super.tick();
 		
-		if(GlassItemFrameModule.glassItemFramesUpdateMaps) {
-			ItemStack stack = getItem();
-			if(stack.getItem() instanceof MapItem && level instanceof ServerLevel) {
-				ServerLevel sworld = (ServerLevel) level;
-				ItemStack clone = stack.copy();
-
-				MapItemSavedData data = MapItem.getSavedData(clone, level);
-				if(data != null && !data.locked) {
-					if(fakePlayer == null)
-						fakePlayer = new MovableFakePlayer(sworld, new GameProfile(UUID.randomUUID(), "ItemFrame"));
-					
-					MapItem item = (MapItem) stack.getItem();
-					
-					clone.setEntityRepresentation(null);
-					fakePlayer.setPos(getX(), getY(), getZ());
-					fakePlayer.getInventory().setItem(0, clone);
-					
-					item.update(level, fakePlayer, data);
-				}
-			}
-		}
+		// The actual updating is shared between every frame showing the same map, see GlassItemFrameModule
+		if(GlassItemFrameModule.glassItemFramesUpdateMaps && getItem().getItem() instanceof MapItem && level instanceof ServerLevel)
+			GlassItemFrameModule.requestMapUpdate(this);
 	}
 
 	@Override
@@ -1,20 +1,39 @@
 package vazkii.quark.content.building.module;
 
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+import com.mojang.authlib.GameProfile;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 import net.minecraft.client.renderer.entity.EntityRenderers;
 import net.minecraft.client.resources.model.ModelResourceLocation;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.MobCategory;
 import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.MapItem;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.saveddata.maps.MapItemSavedData;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.client.model.ForgeModelBakery;
+import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.LogicalSide;
 import vazkii.arl.util.RegistryHelper;
 import vazkii.quark.base.Quark;
 import vazkii.quark.base.module.LoadModule;
 import vazkii.quark.base.module.ModuleCategory;
 import vazkii.quark.base.module.QuarkModule;
 import vazkii.quark.base.module.config.Config;
+import vazkii.quark.base.util.MovableFakePlayer;
 import vazkii.quark.content.building.client.render.entity.GlassItemFrameRenderer;
 import vazkii.quark.content.building.entity.GlassItemFrame;
 import vazkii.quark.content.building.item.QuarkItemFrameItem;
@@ -23,10 +42,21 @@ import vazkii.quark.content.building.item.QuarkItemFrameItem;
  * @author WireSegal
  * Created at 11:00 AM on 8/25/19.
  */
-@LoadModule(category = ModuleCategory.BUILDING)
+@LoadModule(category = ModuleCategory.BUILDING, hasSubscriptions = true)
 public class GlassItemFrameModule extends QuarkModule {
 
 	@Config public static boolean glassItemFramesUpdateMaps = true;
+
+    @Config(description = "How many ticks go by between updates of a map shown in glass item frames. Frames showing the same map share its updates.")
+    @Config.Min(1)
+    public static int mapUpdateInterval = 4;
+
+    @Config(description = "The most maps in glass item frames that can be updated in one tick, per dimension. Maps that don't fit wait for the next tick.")
+    @Config.Min(1)
+    public static int mapUpdatesPerTick = 16;
+
+    // Maps shown in glass frames per level, updated round robin when the level ticks
+    private static final WeakHashMap<Level, MapUpdateQueue> mapUpdates = new WeakHashMap<>();
 	
     public static Item glassFrame;
     public static Item glowingGlassFrame;
@@ -53,6 +83,31 @@ public class GlassItemFrameModule extends QuarkModule {
         		});
     }
 
+    public static void requestMapUpdate(GlassItemFrame frame) {
+        Level level = frame.getLevel();
+        if (!(level instanceof ServerLevel))
+            return;
+
+        Integer mapId = MapItem.getMapId(frame.getItem());
+        if (mapId != null)
+            mapUpdates.computeIfAbsent(level, l -> new MapUpdateQueue()).request(mapId, frame, level.getGameTime());
+    }
+
+    @SubscribeEvent
+    public void onWorldTick(TickEvent.WorldTickEvent event) {
+        if (event.side == LogicalSide.SERVER && event.phase == TickEvent.Phase.END && event.world instanceof ServerLevel level) {
+            MapUpdateQueue queue = mapUpdates.get(level);
+            if (queue != null)
+                queue.tick(level);
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        // The queue holds on to frames and a fake player, which would keep the level from being collected
+        mapUpdates.remove(event.getWorld());
+    }
+
     @Override
     @OnlyIn(Dist.CLIENT)
     public void clientSetup() {
@@ -64,4 +119,85 @@ public class GlassItemFrameModule extends QuarkModule {
     public void modelRegistry() {
         ForgeModelBakery.addSpecialModel(new ModelResourceLocation(new ResourceLocation(Quark.MOD_ID, "glass_frame"), "inventory")); 
     }
+
+    private static class MapUpdateQueue {
+
+        // Maps no frame has asked for in this long get forgotten
+        private static final int FORGET_TICKS = 20;
+
+        private final Int2ObjectMap<MapEntry> entries = new Int2ObjectOpenHashMap<>();
+        private final IntArrayFIFOQueue order = new IntArrayFIFOQueue();
+
+        private FakePlayer fakePlayer;
+
+        private void request(int mapId, GlassItemFrame frame, long time) {
+            MapEntry entry = entries.get(mapId);
+            if (entry == null) {
+                entry = new MapEntry();
+                entries.put(mapId, entry);
+                order.enqueue(mapId);
+            }
+
+            entry.frame = frame;
+            entry.lastRequest = time;
+        }
+
+        private void tick(ServerLevel level) {
+            long time = level.getGameTime();
+            int budget = mapUpdatesPerTick;
+
+            // Look at every map at most once, and carry on next tick from wherever the budget ran out
+            for (int checks = order.size(); checks > 0 && budget > 0; checks--) {
+                int mapId = order.dequeueInt();
+                MapEntry entry = entries.get(mapId);
+
+                if (time - entry.lastRequest > FORGET_TICKS) {
+                    entries.remove(mapId);
+                    continue;
+                }
+
+                if (time - entry.lastUpdate >= mapUpdateInterval && updateMap(level, entry.frame, mapId)) {
+                    entry.lastUpdate = time;
+                    budget--;
+                }
+
+                order.enqueue(mapId);
+            }
+        }
+
+        private boolean updateMap(ServerLevel level, GlassItemFrame frame, int mapId) {
+            if (frame.isRemoved())
+                return false;
+
+            ItemStack stack = frame.getItem();
+            Integer frameMapId = MapItem.getMapId(stack);
+            if (!(stack.getItem() instanceof MapItem item) || frameMapId == null || frameMapId != mapId)
+                return false;
+
+            ItemStack clone = stack.copy();
+            MapItemSavedData data = MapItem.getSavedData(clone, level);
+            if (data == null || data.locked)
+                return false;
+
+            if (fakePlayer == null)
+                fakePlayer = new MovableFakePlayer(level, new GameProfile(UUID.randomUUID(), "ItemFrame"));
+
+            clone.setEntityRepresentation(null);
+            fakePlayer.setPos(frame.getX(), frame.getY(), frame.getZ());
+            fakePlayer.getInventory().setItem(0, clone);
+
+            item.update(level, fakePlayer, data);
+            return true;
+        }
+
+    }
+
+    private static class MapEntry {
+
+        private GlassItemFrame frame;
+        private long lastRequest;
+        private long lastUpdate = Long.MIN_VALUE / 2;
+
+    }
+
 }
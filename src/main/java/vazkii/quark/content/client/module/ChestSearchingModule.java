@@ -1,12 +1,14 @@
 package vazkii.quark.content.client.module;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiPredicate;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.PoseStack;
@@ -17,45 +19,37 @@ import net.minecraft.client.gui.components.EditBox;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.client.gui.screens.inventory.AbstractContainerScreen;
 import net.minecraft.client.renderer.GameRenderer;
-import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.TextComponent;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.inventory.AbstractContainerMenu;
 import net.minecraft.world.inventory.Slot;
-import net.minecraft.world.item.BlockItem;
 import net.minecraft.world.item.CreativeModeTab;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.alchemy.PotionUtils;
 import net.minecraft.world.item.enchantment.Enchantment;
 import net.minecraft.world.item.enchantment.EnchantmentHelper;
-import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.client.event.ScreenEvent;
 import net.minecraftforge.client.event.ScreenEvent.KeyboardCharTypedEvent;
 import net.minecraftforge.client.event.ScreenEvent.KeyboardKeyPressedEvent;
 import net.minecraftforge.client.event.ScreenEvent.MouseClickedEvent;
-import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.ModContainer;
 import net.minecraftforge.fml.ModList;
-import net.minecraftforge.items.CapabilityItemHandler;
-import net.minecraftforge.items.IItemHandler;
-import net.minecraftforge.items.wrapper.EmptyHandler;
-import vazkii.arl.util.ItemNBTHelper;
 import vazkii.quark.api.IQuarkButtonAllowed;
 import vazkii.quark.base.client.handler.InventoryButtonHandler;
 import vazkii.quark.base.client.handler.InventoryButtonHandler.ButtonTargetType;
 import vazkii.quark.base.handler.GeneralConfig;
 import vazkii.quark.base.handler.InventoryTransferHandler;
 import vazkii.quark.base.handler.MiscUtil;
-import vazkii.quark.base.handler.SimilarBlockTypeHandler;
 import vazkii.quark.base.module.LoadModule;
 import vazkii.quark.base.module.ModuleCategory;
 import vazkii.quark.base.module.QuarkModule;
+import vazkii.quark.content.client.tooltip.ShulkerBoxTooltips;
 import vazkii.quark.content.management.client.screen.widgets.MiniInventoryButton;
 
 @LoadModule(category = ModuleCategory.CLIENT, hasSubscriptions = true, subscribeOn = Dist.CLIENT)
@@ -69,6 +63,8 @@ public class ChestSearchingModule extends QuarkModule {
 	private static long lastClick;
 	private static int matched;
 
+	private static SearchQuery query;
+
 	@Override
 	@OnlyIn(Dist.CLIENT)
 	public void clientSetup() {
@@ -88,6 +84,7 @@ public class ChestSearchingModule extends QuarkModule {
 			Minecraft mc = gui.getMinecraft();
 			AbstractContainerScreen<?> chest = (AbstractContainerScreen<?>) gui;
 			if(InventoryTransferHandler.accepts(chest.getMenu(), mc.player)) {
+				query = null;
 				searchBar = new EditBox(mc.font, chest.getGuiLeft() + 18, chest.getGuiTop() + 6, 117, 10, new TextComponent(text));
 
 				searchBar.setValue(text);
@@ -203,57 +200,37 @@ public class ChestSearchingModule extends QuarkModule {
 	}
 
 	public static boolean namesMatch(ItemStack stack, String search) {
-		search = ChatFormatting.stripFormatting(search.trim().toLowerCase(Locale.ROOT));
-		if(search == null || search.isEmpty())
-			return true;
+		// Compiled once for each search text, the same query gets reused for every slot of every frame
+		SearchQuery currQuery = query;
+		if(currQuery == null || !currQuery.text.equals(search)) {
+			currQuery = new SearchQuery(search);
+			query = currQuery;
+		}
+
+		return currQuery.matches(stack);
+	}
 
-		if(stack.isEmpty())
-			return false;
+	private static boolean computeMatch(ItemStack stack, SearchQuery searchQuery) {
+		String search = searchQuery.search;
+		StringMatcher matcher = searchQuery.matcher;
 
 		Item item = stack.getItem();
-		ResourceLocation res = item.getRegistryName();
-		if(SimilarBlockTypeHandler.isShulkerBox(res)) {
-			CompoundTag cmp = ItemNBTHelper.getCompound(stack, "BlockEntityTag", true);
-			if (cmp != null) {
-				if (!cmp.contains("id")) {
-					cmp = cmp.copy();
-					cmp.putString("id", "minecraft:shulker_box");
-				}
-				
-				BlockEntity te = BlockEntity.loadStatic(BlockPos.ZERO, ((BlockItem) item).getBlock().defaultBlockState(), cmp); 
-				if (te != null) {
-					LazyOptional<IItemHandler> handler = te.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY, null);
-					if (handler.isPresent()) {
-						IItemHandler items = handler.orElseGet(EmptyHandler::new);
-
-						for (int i = 0; i < items.getSlots(); i++)
-							if (namesMatch(items.getStackInSlot(i), search))
-								return true;
-					}
-				}
-			}
-		}
+		// The decoded contents are cached and shared, so results for the stacks inside can be cached too
+		ShulkerBoxTooltips.Contents contents = ShulkerBoxTooltips.getContents(stack);
+		if(contents != null)
+			for(ItemStack inside : contents.stacks)
+				if(searchQuery.matches(inside))
+					return true;
 
 		String name = stack.getHoverName().getString();
 		name = ChatFormatting.stripFormatting(name.trim().toLowerCase(Locale.ROOT));
 
-		StringMatcher matcher = String::contains;
-
-		if(search.length() >= 3 && search.startsWith("\"") && search.endsWith("\"")) {
-			search = search.substring(1, search.length() - 1);
-			matcher = String::equals;
-		}
-
-		if(search.length() >= 3 && search.startsWith("/") && search.endsWith("/")) {
-			search = search.substring(1, search.length() - 1);
-			matcher = (s1, s2) -> Pattern.compile(s2).matcher(s1).find();
-		}
-
-		if(stack.isEnchanted()) {
-			Map<Enchantment, Integer> enchants = EnchantmentHelper.getEnchantments(stack);
-			for(Enchantment e : enchants.keySet())
-				if(e != null && matcher.test(e.getFullname(enchants.get(e)).toString().toLowerCase(Locale.ROOT), search))
-					return true;
+		// Also covers enchanted books, which don't count as enchanted
+		for(Map.Entry<Enchantment, Integer> entry : EnchantmentHelper.getEnchantments(stack).entrySet()) {
+			int lvl = entry.getValue();
+			Enchantment e = entry.getKey();
+			if(e != null && matcher.test(e.getFullname(lvl).toString().toLowerCase(Locale.ROOT), search))
+				return true;
 		}
 
 		List<Component> potionNames = new ArrayList<>();
@@ -263,16 +240,6 @@ public class ChestSearchingModule extends QuarkModule {
 				return true;
 		}
 
-
-
-
-		for(Map.Entry<Enchantment, Integer> entry : EnchantmentHelper.getEnchantments(stack).entrySet()) {
-			int lvl = entry.getValue();
-			Enchantment e = entry.getKey();
-			if(e != null && matcher.test(e.getFullname(lvl).toString().toLowerCase(Locale.ROOT), search))
-				return true;
-		}
-
 		CreativeModeTab tab = item.getItemCategory();
 		if(tab != null && matcher.test(tab.getDisplayName().getString().toLowerCase(Locale.ROOT), search))
 			return true;
@@ -294,4 +261,86 @@ public class ChestSearchingModule extends QuarkModule {
 
 	private interface StringMatcher extends BiPredicate<String, String> { }
 
+	/**
+	 * A search text parsed into the string to look for and how to match it, along with the results for every stack
+	 * it's been tested against. Results are keyed by the stack instance, and are thrown out if its item or tag gets swapped.
+	 */
+	private static class SearchQuery {
+
+		private static final int MAX_CACHED_RESULTS = 4096;
+
+		private final String text;
+		private final String search;
+		private final StringMatcher matcher;
+
+		private final Map<ItemStack, CachedMatch> results = new IdentityHashMap<>();
+
+		private SearchQuery(String text) {
+			this.text = text;
+
+			String search = ChatFormatting.stripFormatting(text.trim().toLowerCase(Locale.ROOT));
+			if(search == null)
+				search = "";
+
+			StringMatcher matcher = String::contains;
+
+			if(search.length() >= 3 && search.startsWith("\"") && search.endsWith("\"")) {
+				search = search.substring(1, search.length() - 1);
+				matcher = String::equals;
+			}
+
+			if(search.length() >= 3 && search.startsWith("/") && search.endsWith("/")) {
+				search = search.substring(1, search.length() - 1);
+
+				Pattern pattern;
+				try {
+					pattern = Pattern.compile(search);
+				} catch(PatternSyntaxException e) {
+					pattern = null;
+				}
+
+				// A regex that's still being typed out shouldn't match anything
+				Pattern finalPattern = pattern;
+				matcher = (s1, s2) -> finalPattern != null && finalPattern.matcher(s1).find();
+			}
+
+			this.search = search;
+			this.matcher = matcher;
+		}
+
+		private boolean matches(ItemStack stack) {
+			if(search.isEmpty())
+				return true;
+
+			if(stack.isEmpty())
+				return false;
+
+			CachedMatch cached = results.get(stack);
+			if(cached != null && cached.item == stack.getItem() && cached.tag == stack.getTag())
+				return cached.matches;
+
+			boolean matches = computeMatch(stack, this);
+			if(results.size() >= MAX_CACHED_RESULTS)
+				results.clear();
+			results.put(stack, new CachedMatch(stack.getItem(), stack.getTag(), matches));
+
+			return matches;
+		}
+
+	}
+
+	private static class CachedMatch {
+
+		private final Item item;
+		private final CompoundTag tag;
+		private final boolean matches;
+
+		private CachedMatch(Item item, CompoundTag tag, boolean matches) {
+			this.item = item;
+			this.tag = tag;
+			this.matches = matches;
+		}
+
+	}
+
 }
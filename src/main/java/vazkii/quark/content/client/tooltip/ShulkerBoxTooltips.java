@@ -1,7 +1,9 @@
 package vazkii.quark.content.client.tooltip;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.mojang.blaze3d.platform.Window;
 import com.mojang.blaze3d.systems.RenderSystem;
@@ -30,11 +32,11 @@ import net.minecraft.world.level.block.entity.RandomizableContainerBlockEntity;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.client.event.RenderTooltipEvent;
-import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.items.CapabilityItemHandler;
 import net.minecraftforge.items.IItemHandler;
 import vazkii.arl.util.ItemNBTHelper;
 import vazkii.quark.base.handler.SimilarBlockTypeHandler;
+import vazkii.quark.base.util.ItemKey;
 import vazkii.quark.content.client.module.ChestSearchingModule;
 import vazkii.quark.content.client.module.ImprovedTooltipsModule;
 
@@ -42,6 +44,83 @@ public class ShulkerBoxTooltips {
 
 	public static final ResourceLocation WIDGET_RESOURCE = new ResourceLocation("quark", "textures/misc/shulker_widget.png");
 
+	private static final int[][] TARGET_RATIOS = new int[][] {
+		{ 1, 1 },
+		{ 9, 3 },
+		{ 9, 5 },
+		{ 9, 6 },
+		{ 9, 8 },
+		{ 9, 9 },
+		{ 12, 9 }
+	};
+
+	private static final int MAX_CACHED_CONTENTS = 64;
+	private static final Contents NO_CONTENTS = new Contents(new ItemStack[0], 0, 0);
+
+	// Most recently used decoded boxes, keyed by a copy of the box's item and tag so edits to the stack can't corrupt the key
+	private static final Map<ItemKey, Contents> contentsCache = new LinkedHashMap<>(16, 0.75F, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ItemKey, Contents> eldest) {
+			return size() > MAX_CACHED_CONTENTS;
+		}
+	};
+
+	/**
+	 * Gets the decoded contents of a shulker box stack, or null if it doesn't have any or isn't a box.
+	 * The stacks are shared between everyone asking for the same box, so they must not be modified.
+	 */
+	public static Contents getContents(ItemStack stack) {
+		if(!stack.hasTag() || !SimilarBlockTypeHandler.isShulkerBox(stack))
+			return null;
+
+		ItemKey key = new ItemKey(stack);
+		Contents contents = contentsCache.get(key);
+		if(contents == null) {
+			contents = decodeContents(stack);
+			contentsCache.put(new ItemKey(stack.copy()), contents);
+		}
+
+		return contents == NO_CONTENTS ? null : contents;
+	}
+
+	private static Contents decodeContents(ItemStack stack) {
+		CompoundTag cmp = ItemNBTHelper.getCompound(stack, "BlockEntityTag", true);
+		if (cmp == null)
+			return NO_CONTENTS;
+
+		if (!cmp.contains("id")) {
+			cmp = cmp.copy();
+			cmp.putString("id", "minecraft:shulker_box");
+		}
+
+		BlockEntity te = BlockEntity.loadStatic(BlockPos.ZERO, ((BlockItem) stack.getItem()).getBlock().defaultBlockState(), cmp);
+		if (te == null)
+			return NO_CONTENTS;
+
+		// There's no level to roll the loot table with
+		if(te instanceof RandomizableContainerBlockEntity)
+			((RandomizableContainerBlockEntity) te).setLootTable(null, 0);
+
+		IItemHandler handler = te.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY, null).orElse(null);
+		if (handler == null)
+			return NO_CONTENTS;
+
+		int size = handler.getSlots();
+		ItemStack[] stacks = new ItemStack[size];
+		for (int i = 0; i < size; i++)
+			stacks[i] = handler.getStackInSlot(i);
+
+		int[] dims = { Math.min(size, 9), Math.max(size / 9, 1) };
+		for (int[] testAgainst : TARGET_RATIOS) {
+			if (testAgainst[0] * testAgainst[1] == size) {
+				dims = testAgainst;
+				break;
+			}
+		}
+
+		return new Contents(stacks, dims[0], dims[1]);
+	}
+
 	@OnlyIn(Dist.CLIENT)
 	public static void makeTooltip(RenderTooltipEvent.GatherComponents event) {
 		ItemStack stack = event.getItemStack();
@@ -52,13 +131,7 @@ public class ShulkerBoxTooltips {
 				if(cmp.contains("LootTable"))
 					return;
 
-				if (!cmp.contains("id")) {
-					cmp = cmp.copy();
-					cmp.putString("id", "minecraft:shulker_box");
-				}
-
-				BlockEntity te = BlockEntity.loadStatic(BlockPos.ZERO, ((BlockItem) stack.getItem()).getBlock().defaultBlockState(), cmp);
-				if (te != null && te.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY).isPresent()) {
+				if (getContents(stack) != null) {
 					List<Either<FormattedText, TooltipComponent>> tooltip = event.getTooltipElements();
 					List<Either<FormattedText, TooltipComponent>> tooltipCopy = new ArrayList<>(tooltip);
 
@@ -82,16 +155,6 @@ public class ShulkerBoxTooltips {
 
 	public static class ShulkerComponent implements ClientTooltipComponent, TooltipComponent {
 
-		private static final int[][] TARGET_RATIOS = new int[][] {
-			{ 1, 1 },
-			{ 9, 3 },
-			{ 9, 5 },
-			{ 9, 6 },
-			{ 9, 8 },
-			{ 9, 9 },
-			{ 12, 9 }
-		};
-
 		private static final int CORNER = 5;
 		private static final int BUFFER = 1;
 		private static final int EDGE = 18;
@@ -112,74 +175,56 @@ public class ShulkerBoxTooltips {
 				if(cmp.contains("LootTable"))
 					return;
 
-				if (!cmp.contains("id")) {
-					cmp = cmp.copy();
-					cmp.putString("id", "minecraft:shulker_box");
-				}
-				BlockEntity te = BlockEntity.loadStatic(BlockPos.ZERO, ((BlockItem) stack.getItem()).getBlock().defaultBlockState(), cmp);
-				if (te != null) {
-					if(te instanceof RandomizableContainerBlockEntity)
-						((RandomizableContainerBlockEntity) te).setLootTable(null, 0);
-
-					LazyOptional<IItemHandler> handler = te.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY, null);
-					handler.ifPresent((capability) -> {
-						ItemStack currentBox = stack;
-						int currentX = tooltipX;
-						int currentY = tooltipY;
-
-						int size = capability.getSlots();
-						int[] dims = { Math.min(size, 9), Math.max(size / 9, 1) };
-						for (int[] testAgainst : TARGET_RATIOS) {
-							if (testAgainst[0] * testAgainst[1] == size) {
-								dims = testAgainst;
-								break;
-							}
-						}
+				Contents contents = getContents(stack);
+				if (contents != null) {
+					ItemStack currentBox = stack;
+					int currentX = tooltipX;
+					int currentY = tooltipY;
 
-						int texWidth = CORNER * 2 + EDGE * dims[0];
-						int right = currentX + texWidth;
-						Window window = mc.getWindow();
-						if (right > window.getGuiScaledWidth())
-							currentX -= (right - window.getGuiScaledWidth());
-
-						pose.pushPose();
-						pose.translate(0, 0, 700);
-
-						int color = -1;
-
-						if (ImprovedTooltipsModule.shulkerBoxUseColors && ((BlockItem) currentBox.getItem()).getBlock() instanceof ShulkerBoxBlock) {
-							DyeColor dye = ((ShulkerBoxBlock) ((BlockItem) currentBox.getItem()).getBlock()).getColor();
-							if (dye != null) {
-								float[] colorComponents = dye.getTextureDiffuseColors();
-								color = ((int) (colorComponents[0] * 255) << 16) |
-										((int) (colorComponents[1] * 255) << 8) |
-										(int) (colorComponents[2] * 255);
-							}
-						}
+					int size = contents.stacks.length;
 
-						renderTooltipBackground(mc, pose, currentX, currentY, dims[0], dims[1], color);
+					int texWidth = CORNER * 2 + EDGE * contents.width;
+					int right = currentX + texWidth;
+					Window window = mc.getWindow();
+					if (right > window.getGuiScaledWidth())
+						currentX -= (right - window.getGuiScaledWidth());
+
+					pose.pushPose();
+					pose.translate(0, 0, 700);
+
+					int color = -1;
+
+					if (ImprovedTooltipsModule.shulkerBoxUseColors && ((BlockItem) currentBox.getItem()).getBlock() instanceof ShulkerBoxBlock) {
+						DyeColor dye = ((ShulkerBoxBlock) ((BlockItem) currentBox.getItem()).getBlock()).getColor();
+						if (dye != null) {
+							float[] colorComponents = dye.getTextureDiffuseColors();
+							color = ((int) (colorComponents[0] * 255) << 16) |
+									((int) (colorComponents[1] * 255) << 8) |
+									(int) (colorComponents[2] * 255);
+						}
+					}
 
-						ItemRenderer render = mc.getItemRenderer();
+					renderTooltipBackground(mc, pose, currentX, currentY, contents.width, contents.height, color);
 
-						for (int i = 0; i < size; i++) {
-							ItemStack itemstack = capability.getStackInSlot(i);
-							int xp = currentX + 6 + (i % 9) * 18;
-							int yp = currentY + 6 + (i / 9) * 18;
+					ItemRenderer render = mc.getItemRenderer();
 
-							if (!itemstack.isEmpty()) {
-								render.renderAndDecorateItem(itemstack, xp, yp);
-								render.renderGuiItemDecorations(mc.font, itemstack, xp, yp);
-							}
+					for (int i = 0; i < size; i++) {
+						ItemStack itemstack = contents.stacks[i];
+						int xp = currentX + 6 + (i % 9) * 18;
+						int yp = currentY + 6 + (i / 9) * 18;
 
-							if (!ChestSearchingModule.namesMatch(itemstack)) {
-								RenderSystem.disableDepthTest();
-								GuiComponent.fill(pose, xp, yp, xp + 16, yp + 16, 0xAA000000);
-							}
+						if (!itemstack.isEmpty()) {
+							render.renderAndDecorateItem(itemstack, xp, yp);
+							render.renderGuiItemDecorations(mc.font, itemstack, xp, yp);
 						}
 
-						pose.popPose();
-					});
+						if (!ChestSearchingModule.namesMatch(itemstack)) {
+							RenderSystem.disableDepthTest();
+							GuiComponent.fill(pose, xp, yp, xp + 16, yp + 16, 0xAA000000);
+						}
+					}
 
+					pose.popPose();
 				}
 			}
 		}
@@ -238,4 +283,17 @@ public class ShulkerBoxTooltips {
 		}
 	}
 
+	public static class Contents {
+
+		public final ItemStack[] stacks;
+		public final int width, height;
+
+		private Contents(ItemStack[] stacks, int width, int height) {
+			this.stacks = stacks;
+			this.width = width;
+			this.height = height;
+		}
+
+	}
+
 }
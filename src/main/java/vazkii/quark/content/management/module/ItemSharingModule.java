@@ -11,6 +11,8 @@
 package vazkii.quark.content.management.module;
 
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import com.mojang.blaze3d.platform.InputConstants;
 import com.mojang.blaze3d.systems.RenderSystem;
@@ -122,6 +124,11 @@ public class ItemSharingModule extends QuarkModule {
 
 	private static int chatX, chatY;
 
+	// Where each chat line's item icon goes, worked out the first time the line is drawn. The chat makes new
+	// lines whenever it re-wraps its messages, so entries for old ones get dropped along with them.
+	@OnlyIn(Dist.CLIENT)
+	private static Map<GuiMessage<FormattedCharSequence>, ChatIcon> chatIcons;
+
 	public static MutableComponent createStackComponent(ItemStack stack, MutableComponent component) {
 		if (!ModuleLoader.INSTANCE.isModuleEnabled(ItemSharingModule.class) || !renderItemsInChat)
 			return component;
@@ -162,22 +169,15 @@ public class ItemSharingModule extends QuarkModule {
 
 			int idx = shift;
 
+			if (chatIcons == null)
+				chatIcons = new WeakHashMap<>();
+
 			while (idx < lines.size() && (idx - shift) < chatGui.getLinesPerPage()) {
 				GuiMessage<FormattedCharSequence> line = lines.get(idx);
-				StringBuilder before = new StringBuilder();
 
-				FormattedCharSequence lineProperties = line.getMessage();
-
-				int captureIndex = idx;
-				lineProperties.accept((counter_, style, character) -> {
-					String sofar = before.toString();
-					if (sofar.endsWith("    ")) {
-						render(mc, event.getMatrixStack(), chatGui, updateCounter, sofar.substring(0, sofar.length() - 3), line, captureIndex - shift, style);
-						return false;
-					}
-					before.append((char) character);
-					return true;
-				});
+				ChatIcon icon = chatIcons.computeIfAbsent(line, l -> computeIcon(mc, l));
+				if (icon != ChatIcon.NONE)
+					render(mc, chatGui, updateCounter, icon, line, idx - shift);
 
 				idx++;
 			}
@@ -185,46 +185,90 @@ public class ItemSharingModule extends QuarkModule {
 	}
 
 	@OnlyIn(Dist.CLIENT)
-	private static void render(Minecraft mc, PoseStack pose, ChatComponent chatGui, int updateCounter, String before, GuiMessage<FormattedCharSequence> line, int lineHeight, Style style) {
-		HoverEvent hoverEvent = style.getHoverEvent();
-		if (hoverEvent != null && hoverEvent.getAction() == HoverEvent.Action.SHOW_ITEM) {
-			HoverEvent.ItemStackInfo contents = hoverEvent.getValue(HoverEvent.Action.SHOW_ITEM);
+	private static ChatIcon computeIcon(Minecraft mc, GuiMessage<FormattedCharSequence> line) {
+		StringBuilder before = new StringBuilder();
+		int[] spaces = { 0 };
+		ChatIcon[] icon = { ChatIcon.NONE };
+
+		// The icon goes on the first character after a run of four spaces, over the last three of them
+		line.getMessage().accept((counter_, style, character) -> {
+			if (spaces[0] >= 4) {
+				icon[0] = makeIcon(mc, before.substring(0, before.length() - 3), style);
+				return false;
+			}
 
-			ItemStack stack = contents != null ? contents.getItemStack() : ItemStack.EMPTY;
+			before.append((char) character);
+			if (character == ' ')
+				spaces[0]++;
+			else spaces[0] = 0;
+			return true;
+		});
 
-			if (stack.isEmpty())
-				stack = new ItemStack(Blocks.BARRIER); // for invalid icon
+		return icon[0];
+	}
 
-			int timeSinceCreation = updateCounter - line.getAddedTime();
-			if (chatGui.isChatFocused()) timeSinceCreation = 0;
+	@OnlyIn(Dist.CLIENT)
+	private static ChatIcon makeIcon(Minecraft mc, String before, Style style) {
+		HoverEvent hoverEvent = style.getHoverEvent();
+		if (hoverEvent == null || hoverEvent.getAction() != HoverEvent.Action.SHOW_ITEM)
+			return ChatIcon.NONE;
 
-			if (timeSinceCreation < 200) {
-				float chatOpacity = (float) mc.options.chatOpacity * 0.9f + 0.1f;
-				float fadeOut = Mth.clamp((1 - timeSinceCreation / 200f) * 10, 0, 1);
-				float alpha = fadeOut * fadeOut * chatOpacity;
+		HoverEvent.ItemStackInfo contents = hoverEvent.getValue(HoverEvent.Action.SHOW_ITEM);
 
-				int x = chatX + 3 + mc.font.width(before);
-				int y = chatY - mc.font.lineHeight * lineHeight;
+		ItemStack stack = contents != null ? contents.getItemStack() : ItemStack.EMPTY;
 
-				if (alpha > 0) {
-					alphaValue = alpha; // TODO LOW PRIO blocks dont fade out properly
+		if (stack.isEmpty())
+			stack = new ItemStack(Blocks.BARRIER); // for invalid icon
 
-					PoseStack modelviewPose = RenderSystem.getModelViewStack();
-					
-					modelviewPose.pushPose();
-					modelviewPose.translate(x - 2, y - 2, 0);
-					modelviewPose.scale(0.65f, 0.65f, 0.65f);
-					mc.getItemRenderer().renderGuiItem(stack, 0, 0);
-					modelviewPose.popPose();
-					
-					RenderSystem.applyModelViewMatrix();
+		return new ChatIcon(stack, mc.font.width(before));
+	}
 
-					alphaValue = 1F;
-				}
+	@OnlyIn(Dist.CLIENT)
+	private static void render(Minecraft mc, ChatComponent chatGui, int updateCounter, ChatIcon icon, GuiMessage<FormattedCharSequence> line, int lineHeight) {
+		int timeSinceCreation = updateCounter - line.getAddedTime();
+		if (chatGui.isChatFocused()) timeSinceCreation = 0;
+
+		if (timeSinceCreation < 200) {
+			float chatOpacity = (float) mc.options.chatOpacity * 0.9f + 0.1f;
+			float fadeOut = Mth.clamp((1 - timeSinceCreation / 200f) * 10, 0, 1);
+			float alpha = fadeOut * fadeOut * chatOpacity;
+
+			int x = chatX + 3 + icon.offset;
+			int y = chatY - mc.font.lineHeight * lineHeight;
+
+			if (alpha > 0) {
+				alphaValue = alpha; // TODO LOW PRIO blocks dont fade out properly
+
+				PoseStack modelviewPose = RenderSystem.getModelViewStack();
+				
+				modelviewPose.pushPose();
+				modelviewPose.translate(x - 2, y - 2, 0);
+				modelviewPose.scale(0.65f, 0.65f, 0.65f);
+				mc.getItemRenderer().renderGuiItem(icon.stack, 0, 0);
+				modelviewPose.popPose();
+				
+				RenderSystem.applyModelViewMatrix();
+
+				alphaValue = 1F;
 			}
 		}
 	}
 
 	// used in a mixin because rendering overrides are cursed by necessity hahayes
 	public static float alphaValue = 1F;
+
+	private static class ChatIcon {
+
+		private static final ChatIcon NONE = new ChatIcon(ItemStack.EMPTY, 0);
+
+		private final ItemStack stack;
+		private final int offset;
+
+		private ChatIcon(ItemStack stack, int offset) {
+			this.stack = stack;
+			this.offset = offset;
+		}
+
+	}
+
 }
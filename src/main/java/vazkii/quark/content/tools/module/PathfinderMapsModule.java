@@ -1,32 +1,41 @@
 package vazkii.quark.content.tools.module;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import javax.annotation.Nonnull;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtUtils;
 import net.minecraft.network.chat.TranslatableComponent;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.npc.AbstractVillager;
 import net.minecraft.world.entity.npc.VillagerProfession;
 import net.minecraft.world.entity.npc.VillagerTrades.ItemListing;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
 import net.minecraft.world.item.MapItem;
+import net.minecraft.world.item.trading.Merchant;
 import net.minecraft.world.item.trading.MerchantOffer;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.level.biome.Biomes;
 import net.minecraft.world.level.saveddata.maps.MapDecoration.Type;
 import net.minecraft.world.level.saveddata.maps.MapItemSavedData;
+import net.minecraftforge.event.entity.player.PlayerInteractEvent;
 import net.minecraftforge.event.village.VillagerTradesEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import vazkii.quark.base.Quark;
+import vazkii.quark.base.handler.BiomeLocator;
 import vazkii.quark.base.handler.MiscUtil;
 import vazkii.quark.base.module.LoadModule;
 import vazkii.quark.base.module.ModuleCategory;
@@ -38,6 +47,11 @@ import vazkii.quark.base.module.config.type.AbstractConfigType;
 public class PathfinderMapsModule extends QuarkModule {
 	
 	private static final Object mutex = new Object();
+	
+	public static final String TAG_CHARTING = Quark.MOD_ID + ":charting";
+	private static final String TAG_CHARTING_BIOME = "biome";
+	private static final String TAG_CHARTING_POS = "pos";
+	private static final String TAG_CHARTING_NAME = "name";
 
 	public static List<TradeInfo> builtinTrades = new LinkedList<>();
 	public static List<TradeInfo> customTrades = new LinkedList<>();
@@ -100,6 +114,8 @@ public class PathfinderMapsModule extends QuarkModule {
 	
 	@Override
 	public void configChanged() {
+		BiomeLocator.clear();
+		
 		synchronized (mutex) {
 			tradeList.clear();
 			customTrades.clear();
@@ -153,15 +169,82 @@ public class PathfinderMapsModule extends QuarkModule {
 		if(biomePos == null)
 			return ItemStack.EMPTY;
 			
+		return createMapAt((ServerLevel) world, biomePos, info.name);
+	}
+
+	private static ItemStack createMapAt(ServerLevel world, BlockPos biomePos, String name) {
 		ItemStack stack = MapItem.create(world, biomePos.getX(), biomePos.getZ(), (byte) 2, true, true);
 		// fillExplorationMap
-		MapItem.renderBiomePreviewMap((ServerLevel) world, stack);
+		MapItem.renderBiomePreviewMap(world, stack);
 		MapItemSavedData.addTargetDecoration(stack, biomePos, "+", Type.RED_X);
-		stack.setHoverName(new TranslatableComponent(info.name));
+		stack.setHoverName(new TranslatableComponent(name));
+
+		return stack;
+	}
+
+	// A map with no id yet, that gets turned into the real map once the biome search finishes
+	private static ItemStack createChartingMap(ResourceLocation biome, BlockPos pos, String name) {
+		ItemStack stack = new ItemStack(Items.FILLED_MAP);
+		CompoundTag charting = new CompoundTag();
+		charting.putString(TAG_CHARTING_BIOME, biome.toString());
+		charting.put(TAG_CHARTING_POS, NbtUtils.writeBlockPos(pos));
+		charting.putString(TAG_CHARTING_NAME, name);
+		stack.getOrCreateTag().put(TAG_CHARTING, charting);
+		stack.setHoverName(new TranslatableComponent("quark.misc.pathfinder_charting"));
 
 		return stack;
 	}
 
+	// Offers are kept out of stock while charting so the placeholder can never be bought
+	private static void chart(ServerLevel world, Merchant merchant, MerchantOffer offer) {
+		ItemStack stack = offer.getResult();
+		CompoundTag charting = stack.getTagElement(TAG_CHARTING);
+		if(charting == null)
+			return;
+
+		offer.setToOutOfStock();
+
+		ResourceLocation biome = new ResourceLocation(charting.getString(TAG_CHARTING_BIOME));
+		BlockPos pos = NbtUtils.readBlockPos(charting.getCompound(TAG_CHARTING_POS));
+		String name = charting.getString(TAG_CHARTING_NAME);
+
+		CompletableFuture<Optional<BlockPos>> search = BiomeLocator.locate(world, biome, pos, searchRadius, searchDistanceIncrement);
+		if(search == null) {
+			dropTrade(merchant, offer);
+			return;
+		}
+
+		search.whenCompleteAsync((res, err) -> {
+			// Another search for the same offer may have gotten here first
+			if(stack.getTagElement(TAG_CHARTING) == null)
+				return;
+
+			if(err == null && res.isPresent()) {
+				stack.setTag(createMapAt(world, res.get(), name).getTag());
+				offer.resetUses();
+			} else if(err == null)
+				dropTrade(merchant, offer); // nothing to be found, so this trade is dead
+		}, world.getServer());
+	}
+
+	// Takes a trade that can never be charted off the merchant. If someone has the trade list open it's only
+	// emptied for now, since removing it would shift the trades they see, and it gets removed on the next interaction
+	private static void dropTrade(Merchant merchant, MerchantOffer offer) {
+		offer.getResult().setCount(0);
+		if(merchant != null && merchant.getTradingPlayer() == null)
+			merchant.getOffers().remove(offer);
+	}
+
+	@SubscribeEvent
+	public void onVillagerInteract(PlayerInteractEvent.EntityInteract event) {
+		if(event.getWorld() instanceof ServerLevel world && event.getTarget() instanceof AbstractVillager villager) {
+			// Picks back up any charting that was interrupted by the villager unloading or restocking
+			for(MerchantOffer offer : new ArrayList<>(villager.getOffers()))
+				if(offer.getResult().getTagElement(TAG_CHARTING) != null)
+					chart(world, villager, offer);
+		}
+	}
+
 	private static class PathfinderMapTrade implements ItemListing {
 
 		public final TradeInfo info;
@@ -175,13 +258,36 @@ public class PathfinderMapsModule extends QuarkModule {
 			if(!info.enabled)
 				return null;
 			
+			if(!(entity.level instanceof ServerLevel))
+				return null;
+			
+			ServerLevel world = (ServerLevel) entity.level;
+			BlockPos pos = entity.blockPosition();
 			int i = random.nextInt(info.maxPrice - info.minPrice + 1) + info.minPrice;
 
-			ItemStack itemstack = createMap(entity.level, entity.blockPosition(), info);
-			if(itemstack.isEmpty())
+			// Finding a biome can take seconds, so never do it on the main thread. If we already
+			// know where it is the map is made right away, otherwise it's charted in the background.
+			CompletableFuture<Optional<BlockPos>> search = BiomeLocator.locate(world, info.biome, pos, searchRadius, searchDistanceIncrement);
+			if(search == null || search.isCompletedExceptionally())
 				return null;
 			
-			return new MerchantOffer(new ItemStack(Items.EMERALD, i), new ItemStack(Items.COMPASS), itemstack, 12, xpFromTrade * Math.max(1, (info.level - 1)), 0.2F);
+			ItemStack itemstack;
+			boolean charting = !search.isDone();
+			if(charting)
+				itemstack = createChartingMap(info.biome, pos, info.name);
+			else {
+				Optional<BlockPos> biomePos = search.join();
+				if(biomePos.isEmpty())
+					return null;
+				
+				itemstack = createMapAt(world, biomePos.get(), info.name);
+			}
+			
+			MerchantOffer offer = new MerchantOffer(new ItemStack(Items.EMERALD, i), new ItemStack(Items.COMPASS), itemstack, 12, xpFromTrade * Math.max(1, (info.level - 1)), 0.2F);
+			if(charting)
+				chart(world, entity instanceof Merchant merchant ? merchant : null, offer);
+			
+			return offer;
 		}
 	}
 
@@ -6,12 +6,14 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Stack;
 
 import com.google.common.collect.Lists;
 
@@ -37,19 +39,19 @@ public class EmoteTemplate {
 	private static final Map<String, TweenEquation> equations = new HashMap<>();
 
 	static {
-		functions.put("name", (em, model, player, timeline, tokens) -> name(em, timeline, tokens));
-		functions.put("use", (em, model, player, timeline, tokens) -> use(em, timeline, tokens));
-		functions.put("unit", (em, model, player, timeline, tokens) -> unit(em, timeline, tokens));
-		functions.put("animation", (em, model, player, timeline, tokens) -> animation(em, timeline, tokens));
-		functions.put("section", (em, model, player, timeline, tokens) -> section(em, timeline, tokens));
-		functions.put("end", (em, model, player, timeline, tokens) -> end(em, timeline, tokens));
-		functions.put("move", (em, model, player, timeline, tokens) -> move(em, model, timeline, tokens));
-		functions.put("reset", (em, model, player, timeline, tokens) -> reset(em, model, timeline, tokens));
-		functions.put("pause", (em, model, player, timeline, tokens) -> pause(em, timeline, tokens));
-		functions.put("yoyo", (em, model, player, timeline, tokens) -> yoyo(em, timeline, tokens));
-		functions.put("repeat", (em, model, player, timeline, tokens) -> repeat(em, timeline, tokens));
-		functions.put("tier", (em, model, player, timeline, tokens) -> tier(em, timeline, tokens));
-		functions.put("sound", (em, model, player, timeline, tokens) -> sound(em, player, timeline, tokens));
+		functions.put("name", EmoteTemplate::name);
+		functions.put("use", EmoteTemplate::use);
+		functions.put("unit", EmoteTemplate::unit);
+		functions.put("animation", EmoteTemplate::animation);
+		functions.put("section", EmoteTemplate::section);
+		functions.put("end", EmoteTemplate::end);
+		functions.put("move", EmoteTemplate::move);
+		functions.put("reset", EmoteTemplate::reset);
+		functions.put("pause", EmoteTemplate::pause);
+		functions.put("yoyo", EmoteTemplate::yoyo);
+		functions.put("repeat", EmoteTemplate::repeat);
+		functions.put("tier", EmoteTemplate::tier);
+		functions.put("sound", EmoteTemplate::sound);
 
 		Class<?> clazz = ModelAccessor.class;
 		Field[] fields = clazz.getDeclaredFields();
@@ -88,93 +90,89 @@ public class EmoteTemplate {
 	}
 
 	public final String file;
-	
-	public List<String> readLines;
-	public List<Integer> usedParts;
-	public Stack<Timeline> timelineStack;
-	public float speed;
+
+	public List<Integer> usedParts = new ArrayList<>();
 	public int tier;
-	public boolean compiled = false;
-	public boolean compiledOnce = false;
+
+	// The emote file compiled down to what it does to a timeline, null if it failed to load
+	private List<Instruction> instructions;
 
 	private List<EmoteSound> activeSounds = Lists.newArrayList();
 	
 	public EmoteTemplate(String file) {
 		this.file = file;
-		readAndMakeTimeline(null, null, null);
+		instructions = compile(null);
 	}
 
 	public Timeline getTimeline(EmoteDescriptor desc, Player player, HumanoidModel<?> model) {
-		compiled = false;
-		speed = 1;
-		tier = 0;
+		if(instructions == null)
+			return Timeline.createSequence();
 
-		if(readLines == null)
-			return readAndMakeTimeline(desc, player, model);
-		else {
-			Timeline timeline = null;
-			timelineStack = new Stack<>();
-
-			int i = 0;
-			try {
-				for(; i < readLines.size() && !compiled; i++)
-					timeline = handle(model, player, timeline, readLines.get(i));
-			} catch(Exception e) {
-				logError(e, i);
-				return Timeline.createSequence();
-			}
-			
-			if(timeline == null) 
-				return Timeline.createSequence();
-			
-			return timeline;
-		}
+		return play(model, player);
 	}
 	
 	public Timeline readAndMakeTimeline(EmoteDescriptor desc, Player player, HumanoidModel<?> model) {
-		Timeline timeline = null;
-		usedParts = new ArrayList<>();
-		timelineStack = new Stack<>();
-		int lines = 0;
+		try {
+			instructions = compile(desc);
+		} finally {
+			if (desc != null)
+				desc.updateTier(this);
+		}
+
+		if(instructions == null)
+			return fallback();
+
+		return play(model, player);
+	}
 
+	private List<Instruction> compile(EmoteDescriptor desc) {
+		List<Instruction> compiledInstructions = new ArrayList<>();
+		CompileState state = new CompileState();
+		usedParts = new ArrayList<>();
 		tier = 0;
-		
-		BufferedReader reader = null;
-		compiled = compiledOnce = false;
-		readLines = new ArrayList<>();
-		try {
-			reader = createReader();
+		int lines = 0;
 
+		try(BufferedReader reader = createReader()) {
 			try {
 				String s;
-				while((s = reader.readLine()) != null && !compiled) {
+				while(!state.done && (s = reader.readLine()) != null) {
 					lines++;
-					readLines.add(s);
-					timeline = handle(model, player, timeline, s);
+					Instruction instruction = handle(state, s);
+					if(instruction != null)
+						compiledInstructions.add(instruction);
 				}
 			} catch(Exception e) {
 				logError(e, lines);
-				return fallback();
+				return null;
 			}
-
-			if(timeline == null) 
-				return fallback();
-
-			return timeline;
 		} catch(IOException e) {
 			Quark.LOG.warn("Failed to load emote " + desc, e);
-			return fallback();
-		} finally {
-			compiledOnce = true;
-			if (desc != null)
-				desc.updateTier(this);
-			try {
-				if(reader != null)
-					reader.close();
-			} catch (IOException e) {
-				Quark.LOG.warn("Failed to load emote " + desc, e);
-			}
+			return null;
 		}
+
+		// Resets only touch parts the emote uses, and a use line may come after the reset
+		for(ResetInstruction reset : state.resets)
+			reset.resolve(usedParts);
+
+		return List.copyOf(compiledInstructions);
+	}
+
+	private Timeline play(HumanoidModel<?> model, Player player) {
+		Timeline timeline = null;
+		Deque<Timeline> timelineStack = new ArrayDeque<>();
+
+		try {
+			for(Instruction instruction : instructions)
+				timeline = instruction.apply(this, model, player, timeline, timelineStack);
+		} catch(Exception e) {
+			Quark.LOG.error("[Custom Emotes] Error playing emote " + file, e);
+			return Timeline.createSequence();
+		}
+
+		if(timeline == null)
+			return Timeline.createSequence();
+
+		return timeline;
 	}
 	
 	protected BufferedReader createReader() throws FileNotFoundException {
@@ -193,31 +191,28 @@ public class EmoteTemplate {
 		else Quark.LOG.error("[Custom Emotes] " + e.getMessage());
 	}
 
-	private Timeline handle(HumanoidModel<?> model, Player player, Timeline timeline, String s) throws IllegalArgumentException {
+	private Instruction handle(CompileState state, String s) throws IllegalArgumentException {
 		s = s.trim();
 		if(s.startsWith("#") || s.isEmpty())
-			return timeline;
+			return null;
 		
 		String[] tokens = s.trim().split(" ");
 		String function = tokens[0];
 		
 		if(functions.containsKey(function))
-			return functions.get(function).invoke(this, model, player, timeline, tokens);
+			return functions.get(function).compile(this, state, tokens);
 
 		throw new IllegalArgumentException("Illegal function name " + function);
 	}
 	
 	protected void setName(String[] tokens) { }
 	
-	private static Timeline name(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
+	private static Instruction name(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
 		em.setName(tokens);
-		return timeline;
+		return null;
 	}
 
-	private static Timeline use(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
-		if(em.compiledOnce)
-			return timeline;
-		
+	private static Instruction use(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
 		assertParamSize(tokens, 2);
 
 		String part = tokens[1];
@@ -226,87 +221,96 @@ public class EmoteTemplate {
 			em.usedParts.add(parts.get(part));
 		else throw new IllegalArgumentException("Illegal part name for function use: " + part);
 
-		return timeline;
+		return null;
 	}
 
-	private static Timeline unit(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
+	private static Instruction unit(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
 		assertParamSize(tokens, 2);
-		em.speed = Float.parseFloat(tokens[1]);
-		return timeline;
+		state.speed = Float.parseFloat(tokens[1]);
+		return null;
 	}
 
-	private static Timeline tier(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
+	private static Instruction tier(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
 		assertParamSize(tokens, 2);
 		em.tier = Integer.parseInt(tokens[1]);
-		return timeline;
+		return null;
 	}
 	
-	private static Timeline animation(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
-		if(timeline != null)
+	private static Instruction animation(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
+		if(state.started)
 			throw new IllegalArgumentException("Illegal use of function animation, animation already started");
 
 		assertParamSize(tokens, 2);
 
 		String type = tokens[1];
-
-		Timeline newTimeline;
-
+		boolean sequence;
 		switch(type) {
 			case "sequence":
-				newTimeline = Timeline.createSequence();
+				sequence = true;
 				break;
 			case "parallel":
-				newTimeline = Timeline.createParallel();
+				sequence = false;
 				break;
 			default:
 				throw new IllegalArgumentException("Illegal animation type: " + type);
 		}
 
-		newTimeline.addCallback(TweenCallback.START, (tween) -> {
-			EmoteSound.endAll(em.activeSounds);
-			em.activeSounds = Lists.newArrayList();
-		});
-		return newTimeline;
+		state.started = true;
+		return (emote, model, player, timeline, timelineStack) -> {
+			Timeline newTimeline = sequence ? Timeline.createSequence() : Timeline.createParallel();
+			newTimeline.addCallback(TweenCallback.START, (tween) -> {
+				EmoteSound.endAll(emote.activeSounds);
+				emote.activeSounds = Lists.newArrayList();
+			});
+			return newTimeline;
+		};
 	}
 
-	private static Timeline section(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
-		if(timeline == null)
+	private static Instruction section(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
+		if(!state.started)
 			throw new IllegalArgumentException("Illegal use of function section, animation not started");
 		assertParamSize(tokens, 2);
 
 		String type = tokens[1];
-		Timeline newTimeline;
+		boolean sequence;
 		switch(type) {
 			case "sequence":
-				newTimeline = Timeline.createSequence();
+				sequence = true;
 				break;
 			case "parallel":
-				newTimeline = Timeline.createParallel();
+				sequence = false;
 				break;
-			default: throw new IllegalArgumentException("Illegal section type: " + type);
+			default:
+				throw new IllegalArgumentException("Illegal section type: " + type);
 		}
 
-		em.timelineStack.push(timeline);
-		return newTimeline;
+		state.sections++;
+		return (emote, model, player, timeline, timelineStack) -> {
+			timelineStack.push(timeline);
+			return sequence ? Timeline.createSequence() : Timeline.createParallel();
+		};
 	}
 
-	private static Timeline end(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
-		if(timeline == null)
+	private static Instruction end(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
+		if(!state.started)
 			throw new IllegalArgumentException("Illegal use of function end, animation not started");
 		assertParamSize(tokens, 1);
 
-		if(em.timelineStack.isEmpty()) {
-			em.compiled = true;
-			return timeline;
+		if(state.sections == 0) {
+			state.done = true;
+			return null;
 		}
 
-		Timeline poppedLine = em.timelineStack.pop();
-		poppedLine.push(timeline);
-		return poppedLine;
+		state.sections--;
+		return (emote, model, player, timeline, timelineStack) -> {
+			Timeline poppedLine = timelineStack.pop();
+			poppedLine.push(timeline);
+			return poppedLine;
+		};
 	}
 
-	private static Timeline move(EmoteTemplate em, HumanoidModel<?> model, Timeline timeline, String[] tokens) throws IllegalArgumentException {
-		if(timeline == null)
+	private static Instruction move(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
+		if(!state.started)
 			throw new IllegalArgumentException("Illegal use of function move, animation not started");
 		if(tokens.length < 4)
 			throw new IllegalArgumentException(String.format("Illegal parameter amount for function move: %d (at least 4 are required)", tokens.length));
@@ -317,46 +321,39 @@ public class EmoteTemplate {
 			part = tweenables.get(partStr);
 		else throw new IllegalArgumentException("Illegal part name for function move: " + partStr);
 		
-		float time = Float.parseFloat(tokens[2]) * em.speed;
+		float time = Float.parseFloat(tokens[2]) * state.speed;
 		float target = Float.parseFloat(tokens[3]);
 
-		Tween tween = null;
-		boolean valid = model != null;
-		if(valid)
-			tween = Tween.to(model, part, time).target(target);
+		// Delays add up, the repeat and easing settings replace each other
+		float delay = 0;
+		boolean repeats = false, yoyo = false;
+		int repeatTimes = 0;
+		float repeatDelay = 0;
+		TweenEquation equation = null;
+
 		if(tokens.length > 4) {
 			int index = 4;
 			while(index < tokens.length) {
 				String cmd = tokens[index++];
-				int times;
-				float delay;
 				switch(cmd) {
 					case "delay":
 						assertParamSize("delay", tokens, 1, index);
-						delay = Float.parseFloat(tokens[index++]) * em.speed;
-						if(valid)
-							tween = tween.delay(delay);
+						delay += Float.parseFloat(tokens[index++]) * state.speed;
 						break;
 					case "yoyo":
-						assertParamSize("yoyo", tokens, 2, index);
-						times = Integer.parseInt(tokens[index++]);
-						delay = Float.parseFloat(tokens[index++]) * em.speed;
-						if(valid)
-							tween = tween.repeatYoyo(times, delay);
-						break;
 					case "repeat":
-						assertParamSize("repeat", tokens, 2, index);
-						times = Integer.parseInt(tokens[index++]);
-						delay = Float.parseFloat(tokens[index++]) * em.speed;
-						if(valid)
-							tween = tween.repeat(times, delay);
+						assertParamSize(cmd, tokens, 2, index);
+						repeats = true;
+						yoyo = cmd.equals("yoyo");
+						repeatTimes = Integer.parseInt(tokens[index++]);
+						repeatDelay = Float.parseFloat(tokens[index++]) * state.speed;
 						break;
 					case "ease":
 						assertParamSize("ease", tokens, 1, index);
 						String easeType = tokens[index++];
-						if(equations.containsKey(easeType)) {
-							if(valid) tween.ease(equations.get(easeType));
-						} else throw new IllegalArgumentException("Easing type " + easeType + " doesn't exist");
+						if(equations.containsKey(easeType))
+							equation = equations.get(easeType);
+						else throw new IllegalArgumentException("Easing type " + easeType + " doesn't exist");
 						break;
 					default:
 						throw new IllegalArgumentException(String.format("Invalid modifier %s for move function", cmd));
@@ -364,65 +361,88 @@ public class EmoteTemplate {
 			}
 		}
 
-		if(valid)
+		float finalDelay = delay;
+		boolean finalRepeats = repeats, finalYoyo = yoyo;
+		int finalRepeatTimes = repeatTimes;
+		float finalRepeatDelay = repeatDelay;
+		TweenEquation finalEquation = equation;
+
+		return (emote, model, player, timeline, timelineStack) -> {
+			if(model == null)
+				return timeline;
+
+			Tween tween = Tween.to(model, part, time).target(target);
+			if(finalDelay != 0)
+				tween.delay(finalDelay);
+			if(finalRepeats) {
+				if(finalYoyo)
+					tween.repeatYoyo(finalRepeatTimes, finalRepeatDelay);
+				else tween.repeat(finalRepeatTimes, finalRepeatDelay);
+			}
+			if(finalEquation != null)
+				tween.ease(finalEquation);
+
 			return timeline.push(tween);
-		return timeline;
+		};
 	}
 
-	private static Timeline sound(EmoteTemplate em, Player player, Timeline timeline, String[] tokens) throws IllegalArgumentException {
-		if (timeline == null)
+	private static Instruction sound(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
+		if (!state.started)
 			throw new IllegalArgumentException("Illegal use of function sound, animation not started");
 		if (tokens.length < 2)
 			throw new IllegalArgumentException("Expected action (continuous, instant, stop) for function sound");
 
 		String playType = tokens[1];
 		if (playType.equals("stop")) {
+			return (emote, model, player, timeline, timelineStack) -> {
+				List<BaseTween<?>> children = timeline.getChildren();
+				BaseTween<?> callbackTween = timeline;
+				int tweenEvent = TweenCallback.START;
+				if (!children.isEmpty()) {
+					tweenEvent = TweenCallback.COMPLETE;
+					callbackTween = children.get(children.size() - 1);
+				}
 
-			List<BaseTween<?>> children = timeline.getChildren();
-			BaseTween<?> callbackTween = timeline;
-			int tweenEvent = TweenCallback.START;
-			if (!children.isEmpty()) {
-				tweenEvent = TweenCallback.COMPLETE;
-				callbackTween = children.get(children.size() - 1);
-			}
+				callbackTween.addCallback(tweenEvent, (tween) -> EmoteSound.endAll(emote.activeSounds));
+				return timeline;
+			};
+		}
 
-			callbackTween.addCallback(tweenEvent, (tween) -> EmoteSound.endAll(em.activeSounds));
-		} else {
+		boolean repeating = playType.equals("continuous");
+		if (!repeating && !playType.equals("instant"))
+			throw new IllegalArgumentException(String.format("Invalid modifier %s for sound function", playType));
 
-			boolean repeating = playType.equals("continuous");
-			if (!repeating && !playType.equals("instant"))
-				throw new IllegalArgumentException(String.format("Invalid modifier %s for sound function", playType));
+		assertParamSize(tokens, 4, 6);
 
-			assertParamSize(tokens, 4, 6);
+		String endCondition = tokens[2];
+		boolean endWithSequence = endCondition.equals("section");
+		if (!endWithSequence && !endCondition.equals("emote"))
+			throw new IllegalArgumentException(String.format("Invalid modifier %s for sound function", endCondition));
 
-			String endCondition = tokens[2];
-			boolean endWithSequence = endCondition.equals("section");
-			if (!endWithSequence && !endCondition.equals("emote"))
-				throw new IllegalArgumentException(String.format("Invalid modifier %s for sound function", endCondition));
+		String type = tokens[3];
+		float volume = 1f;
+		float pitch = 1f;
 
-			String type = tokens[3];
-			float volume = 1f;
-			float pitch = 1f;
+		try {
+			if (tokens.length >= 5)
+				volume = Math.min(Float.parseFloat(tokens[4]), 1.5f);
 
-			try {
-				if (tokens.length >= 5)
-					volume = Math.min(Float.parseFloat(tokens[4]), 1.5f);
+			if (tokens.length >= 6)
+				pitch = Float.parseFloat(tokens[5]);
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Illegal number in function sound", ex);
+		}
 
-				if (tokens.length >= 6)
-					pitch = Float.parseFloat(tokens[5]);
-			} catch (NumberFormatException ex) {
-				throw new IllegalArgumentException("Illegal number in function sound", ex);
-			}
+		ResourceLocation soundEvent = new ResourceLocation(type);
 
-			ResourceLocation soundEvent = new ResourceLocation(type);
+		final float finalVolume = volume;
+		final float finalPitch = pitch;
 
+		return (emote, model, player, timeline, timelineStack) -> {
 			List<BaseTween<?>> children = timeline.getChildren();
 
 			List<EmoteSound> sounds = Lists.newArrayList();
 
-			final float finalVolume = volume;
-			final float finalPitch = pitch;
-
 			BaseTween<?> callbackTween = timeline;
 			int tweenEvent = TweenCallback.START;
 			if (!children.isEmpty()) {
@@ -431,18 +451,20 @@ public class EmoteTemplate {
 			}
 
 			callbackTween.addCallback(tweenEvent,
-					(tween) -> EmoteSound.add(em.activeSounds, sounds, player, em,
+					(tween) -> EmoteSound.add(emote.activeSounds, sounds, player, emote,
 							soundEvent, finalVolume, finalPitch,
 							repeating, endWithSequence));
 
 			timeline.addCallback(TweenCallback.COMPLETE,
 					(tween) -> EmoteSound.endSection(sounds));
-		}
 
-		return timeline;
+			return timeline;
+		};
 	}
 	
-	private static Timeline reset(EmoteTemplate em, HumanoidModel<?> model, Timeline timeline, String[] tokens) throws IllegalArgumentException {
+	private static Instruction reset(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
+		if(!state.started)
+			throw new IllegalArgumentException("Illegal use of function reset, animation not started");
 		if(tokens.length < 4)
 			throw new IllegalArgumentException(String.format("Illegal parameter amount for function reset: %d (at least 4 are required)", tokens.length));
 
@@ -460,43 +482,40 @@ public class EmoteTemplate {
 			throw new IllegalArgumentException("Illegal reset type: " + type);
 		
 		int partInt = allParts ? 0 : parts.get(part);
-		float time = Float.parseFloat(tokens[3]) * em.speed;
-		
-		if(model != null) {
-			Timeline parallel = Timeline.createParallel();
-			int lower = allParts ? 0 : partInt + (rot ? 0 : 3);
-			int upper = allParts ? ModelAccessor.STATE_COUNT : partInt + (off ? ModelAccessor.STATE_COUNT : 3);
-			
-			for(int i = lower; i < upper; i++) {
-				int piece = (i / ModelAccessor.MODEL_PROPS) * ModelAccessor.MODEL_PROPS;
-				if(em.usedParts.contains(piece))
-					parallel.push(Tween.to(model, i, time));
-			}
-			
-			timeline.push(parallel);
-		}
-		
-		return timeline;
+		float time = Float.parseFloat(tokens[3]) * state.speed;
+
+		int lower = allParts ? 0 : partInt + (rot ? 0 : 3);
+		int upper = allParts ? ModelAccessor.STATE_COUNT : partInt + (off ? ModelAccessor.STATE_COUNT : 3);
+
+		ResetInstruction reset = new ResetInstruction(lower, upper, time);
+		state.resets.add(reset);
+		return reset;
 	}
 
-	private static Timeline pause(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
+	private static Instruction pause(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
+		if(!state.started)
+			throw new IllegalArgumentException("Illegal use of function pause, animation not started");
 		assertParamSize(tokens, 2);
-		float ms = Float.parseFloat(tokens[1]) * em.speed;
-		return timeline.pushPause(ms);
+		float ms = Float.parseFloat(tokens[1]) * state.speed;
+		return (emote, model, player, timeline, timelineStack) -> timeline.pushPause(ms);
 	}
 
-	private static Timeline yoyo(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
+	private static Instruction yoyo(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
+		if(!state.started)
+			throw new IllegalArgumentException("Illegal use of function yoyo, animation not started");
 		assertParamSize(tokens, 3);
 		int times = Integer.parseInt(tokens[1]);
-		float delay = Float.parseFloat(tokens[2]) * em.speed;
-		return timeline.repeatYoyo(times, delay);
+		float delay = Float.parseFloat(tokens[2]) * state.speed;
+		return (emote, model, player, timeline, timelineStack) -> timeline.repeatYoyo(times, delay);
 	}
 
-	private static Timeline repeat(EmoteTemplate em, Timeline timeline, String[] tokens) throws IllegalArgumentException {
+	private static Instruction repeat(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException {
+		if(!state.started)
+			throw new IllegalArgumentException("Illegal use of function repeat, animation not started");
 		assertParamSize(tokens, 3);
 		int times = Integer.parseInt(tokens[1]);
-		float delay = Float.parseFloat(tokens[2]) * em.speed;
-		return timeline.repeat(times, delay);
+		float delay = Float.parseFloat(tokens[2]) * state.speed;
+		return (emote, model, player, timeline, timelineStack) -> timeline.repeat(times, delay);
 	}
 	
 	private static void assertParamSize(String[] tokens, int expect) throws IllegalArgumentException {
@@ -519,7 +538,63 @@ public class EmoteTemplate {
 	}
 
 	private interface Function {
-		Timeline invoke(EmoteTemplate em, HumanoidModel<?> model, Player player, Timeline timeline, String[] tokens) throws IllegalArgumentException;
+		Instruction compile(EmoteTemplate em, CompileState state, String[] tokens) throws IllegalArgumentException;
+	}
+
+	private interface Instruction {
+		Timeline apply(EmoteTemplate em, HumanoidModel<?> model, Player player, Timeline timeline, Deque<Timeline> timelineStack);
+	}
+
+	private static class CompileState {
+
+		private float speed = 1;
+		private boolean started;
+		private int sections;
+		private boolean done;
+
+		private final List<ResetInstruction> resets = new ArrayList<>();
+
+	}
+
+	private static class ResetInstruction implements Instruction {
+
+		private final int lower, upper;
+		private final float time;
+
+		private int[] states = new int[0];
+
+		private ResetInstruction(int lower, int upper, float time) {
+			this.lower = lower;
+			this.upper = upper;
+			this.time = time;
+		}
+
+		private void resolve(List<Integer> usedParts) {
+			int[] resolved = new int[upper - lower];
+			int count = 0;
+
+			for(int i = lower; i < upper; i++) {
+				int piece = (i / ModelAccessor.MODEL_PROPS) * ModelAccessor.MODEL_PROPS;
+				if(usedParts.contains(piece))
+					resolved[count++] = i;
+			}
+
+			states = Arrays.copyOf(resolved, count);
+		}
+
+		@Override
+		public Timeline apply(EmoteTemplate em, HumanoidModel<?> model, Player player, Timeline timeline, Deque<Timeline> timelineStack) {
+			if(model != null) {
+				Timeline parallel = Timeline.createParallel();
+				for(int state : states)
+					parallel.push(Tween.to(model, state, time));
+
+				timeline.push(parallel);
+			}
+
+			return timeline;
+		}
+
 	}
 
 }
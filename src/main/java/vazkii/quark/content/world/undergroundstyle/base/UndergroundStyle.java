@@ -3,7 +3,6 @@ package vazkii.quark.content.world.undergroundstyle.base;
 import java.util.function.Predicate;
 
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.BlockPos.MutableBlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.tags.BlockTags;
 import net.minecraft.tags.Tag;
@@ -38,17 +37,7 @@ public abstract class UndergroundStyle {
 		if(state.getDestroySpeed(world, pos) == -1)
 			return;
 		
-		boolean shrouded = false;
-		BlockPos testPos = new MutableBlockPos(pos.getX(), pos.getY(), pos.getZ());
-		while(!world.isOutsideBuildHeight(testPos)) {
-			testPos = testPos.above();
-			if(world.getBlockState(testPos).isSolidRender(world, testPos)) {
-				shrouded = true;
-				break;
-			}
-		}
-		
-		if(!shrouded)
+		if(!context.isShrouded(pos))
 			return;
 		
 		if(isFloor(world, pos, state)) {
@@ -6,7 +6,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.BlockPos.MutableBlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.server.level.WorldGenRegion;
 import net.minecraft.world.level.biome.Biome;
@@ -69,12 +71,39 @@ public class UndergroundStyleGenerator extends ClusterBasedGenerator {
 
 		public final Map<BlockPos, Direction> wallMap = new HashMap<>();
 		
+		// Highest solid render block per column, so the shroud check scans each column only once per pass
+		private final Long2IntOpenHashMap roofCache = new Long2IntOpenHashMap();
+		
 		public Context(WorldGenRegion world, BlockPos source, ChunkGenerator generator, Random random, UndergroundStyleConfig info) {
 			this.world = world;
 			this.source = source;
 			this.generator = generator;
 			this.random = random;
 			this.info = info;
+			
+			roofCache.defaultReturnValue(Integer.MIN_VALUE);
+		}
+		
+		public boolean isShrouded(BlockPos pos) {
+			long key = BlockPos.asLong(pos.getX(), 0, pos.getZ());
+			int roof = roofCache.get(key);
+			if(roof == Integer.MIN_VALUE) {
+				roof = findRoof(pos.getX(), pos.getZ());
+				roofCache.put(key, roof);
+			}
+			
+			return roof > pos.getY();
+		}
+		
+		private int findRoof(int x, int z) {
+			MutableBlockPos testPos = new MutableBlockPos(x, 0, z);
+			for(int y = world.getMaxBuildHeight() - 1; y >= world.getMinBuildHeight(); y--) {
+				testPos.setY(y);
+				if(world.getBlockState(testPos).isSolidRender(world, testPos))
+					return y;
+			}
+			
+			return world.getMinBuildHeight() - 1;
 		}
 
 		@Override